@@ -0,0 +1,145 @@
+package ext2.jmh;
+
+import ext2.Directory;
+import ext2.DirectoryEntry;
+import ext2.INode;
+import ext2.INodeScanner;
+import ext2.MappedBlockDevice;
+import ext2.MemoryBlockDevice;
+import ext2.TreeWalker;
+import ext2.Volume;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Name: BenchmarkImage
+ *
+ * This class opens the image a benchmark runs against and finds what each benchmark measures in it,
+ * so the benchmarks can run against any image without being told which paths or files it contains.
+ * Volumes are opened straight from a block device, so nothing is printed while a benchmark runs.
+ *
+ * @author Harry Baines
+ */
+public final class BenchmarkImage {
+
+    /* POINTER TIER CONSTANTS */
+    public static final String DIRECT = "direct";                   /* Every block is reached from a direct pointer */
+    public static final String INDIRECT = "indirect";               /* The last block is reached through the single indirect block */
+    public static final String DOUBLE_INDIRECT = "double";          /* The last block is reached through the double indirect block */
+    public static final String TRIPLE_INDIRECT = "triple";          /* The last block is reached through the triple indirect block */
+
+    /**
+     * Private constructor - this class only has static methods.
+     */
+    private BenchmarkImage() {
+    }
+
+    /**
+     * Opens a volume without printing anything.
+     *
+     * @param path The path to the image.
+     * @param memoryMapped True to memory map the image, false to read it into memory.
+     * @return The opened volume.
+     */
+    public static Volume open(String path, boolean memoryMapped) {
+        try {
+            return new Volume(memoryMapped ? new MappedBlockDevice(path) : new MemoryBlockDevice(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't open the image " + path + " - set it with -p volume=<path>", e);
+        }
+    }
+
+    /**
+     * Finds a path to a regular file at exactly the given depth, e.g. depth 3 is "/a/b/file".
+     *
+     * @param vol The volume to search.
+     * @param depth The number of names in the path.
+     * @return The path.
+     * @throws IllegalStateException if the image has no regular file at that depth.
+     */
+    public static String findFileAtDepth(Volume vol, int depth) {
+
+        String[] found = new String[1];
+        TreeWalker walker = new TreeWalker(vol);
+        walker.setMaxDepth(depth);
+        walker.walk("/", (path, entry, isDirectory, entryDepth) -> {
+            if (found[0] != null)
+                return false;
+            if (!isDirectory && entryDepth == depth && vol.getINode(entry.getINodeNumber()).isRegularFile())
+                found[0] = path;
+            return true;
+        });
+
+        if (found[0] == null)
+            throw new IllegalStateException("The image has no regular file at depth " + depth);
+        return found[0];
+    }
+
+    /**
+     * Finds the directory with the fewest or the most entries, not counting "." and "..".
+     *
+     * @param vol The volume to search.
+     * @param largest True to find the directory with the most entries, false for the fewest.
+     * @return The iNode number of the directory.
+     */
+    public static int findDirectory(Volume vol, boolean largest) {
+
+        long[] best = { largest ? -1 : Long.MAX_VALUE, Volume.ROOT_INODE_NUMBER };
+        new INodeScanner(vol).scan(view -> {
+            if (!view.isDirectory() || !view.isInUse())
+                return;
+            long numEntries = 0;
+            for (DirectoryEntry entry : new Directory(vol, view.toINode()))
+                if (!entry.isDotOrDotDot())
+                    numEntries++;
+            synchronized (best) {
+                if (largest ? numEntries > best[0] : (numEntries > 0 && numEntries < best[0])) {
+                    best[0] = numEntries;
+                    best[1] = view.getINodeNumber();
+                }
+            }
+        });
+        return (int) best[1];
+    }
+
+    /**
+     * Finds the largest regular file whose last block is reached through the given tier of block pointers.
+     *
+     * @param vol The volume to search.
+     * @param tier The tier of block pointers (see the tier constants in this class).
+     * @return The iNode number of the file.
+     * @throws IllegalStateException if the image has no regular file of that tier.
+     */
+    public static int findFileForTier(Volume vol, String tier) {
+
+        long blockSize = vol.getSuperblock().getBlockSize();
+        long pointersPerBlock = blockSize / Integer.BYTES;
+        long directLimit = INode.NUM_DIRECT_POINTERS;
+        long indirectLimit = directLimit + pointersPerBlock;
+        long doubleLimit = indirectLimit + pointersPerBlock * pointersPerBlock;
+
+        long[] best = { 0, 0 };
+        new INodeScanner(vol).scan(view -> {
+            if (!view.isInUse() || (view.getFileMode() & INode.FILE_TYPE_MASK) != INode.REGULAR_FILE_TYPE)
+                return;
+            long size = view.getTotalFileSize();
+            long numBlocks = (size + blockSize - 1) / blockSize;
+            if (numBlocks == 0)
+                return;
+            String fileTier = (numBlocks <= directLimit) ? DIRECT
+                : (numBlocks <= indirectLimit) ? INDIRECT
+                : (numBlocks <= doubleLimit) ? DOUBLE_INDIRECT : TRIPLE_INDIRECT;
+            synchronized (best) {
+                if (fileTier.equals(tier) && size > best[0]) {
+                    best[0] = size;
+                    best[1] = view.getINodeNumber();
+                }
+            }
+        });
+
+        if (best[1] == 0)
+            throw new IllegalStateException("The image has no regular file reached through " + tier + " block pointers");
+        return (int) best[1];
+    }
+}
@@ -0,0 +1,84 @@
+package ext2.jmh;
+
+import ext2.Directory;
+import ext2.Volume;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name: DirectoryListingBenchmark
+ *
+ * This class measures Directory.getFileInfo(), the long listing of a directory, on the directories with the fewest
+ * and the most entries in the image. Each listing reads the iNode of every entry, so with the iNode cache disabled
+ * the cost of parsing iNodes is included. With it enabled the cache is made large enough to hold every iNode in the directory,
+ * so each listing after the first finds every iNode already parsed.
+ *
+ * @author Harry Baines
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryListingBenchmark {
+
+    @Param({ "../src/volumes/ext2fs" })
+    public String volume;                   /* The path to the image */
+
+    @Param({ "smallest", "largest" })
+    public String directory;                /* Which directory to list */
+
+    @Param({ "true", "false" })
+    public boolean iNodeCache;              /* True to cache every iNode in the directory, false to disable the cache */
+
+    private Volume vol;                     /* The opened volume */
+    private int dirINodeNumber;             /* The iNode number of the directory listed */
+
+    /**
+     * Opens the volume and finds the directory to list.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.vol = BenchmarkImage.open(this.volume, true);
+        this.dirINodeNumber = BenchmarkImage.findDirectory(this.vol, this.directory.equals("largest"));
+        int numEntries = new Directory(this.vol, this.vol.getINode(this.dirINodeNumber)).getFileInfo().size();
+        this.vol.setINodeCacheSize(this.iNodeCache ? Math.max(Volume.DEFAULT_INODE_CACHE_SIZE, 2 * numEntries) : 0);
+    }
+
+    /**
+     * Closes the volume.
+     * @throws IOException if the volume couldn't be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.vol.close();
+    }
+
+    /**
+     * Lists the directory.
+     * @param blackhole Consumes the listing.
+     */
+    @Benchmark
+    public void getFileInfo(Blackhole blackhole) {
+        List<String> rows = new Directory(this.vol, this.vol.getINode(this.dirINodeNumber)).getFileInfo();
+        blackhole.consume(rows);
+    }
+}
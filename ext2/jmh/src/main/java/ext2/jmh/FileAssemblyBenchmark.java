@@ -0,0 +1,85 @@
+package ext2.jmh;
+
+import ext2.Ext2File;
+import ext2.Volume;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name: FileAssemblyBenchmark
+ *
+ * This class measures assembling a whole file into one array, both from its data blocks with INode.getDataBlocksFromPointers()
+ * and through Ext2File.read(), on the largest file reached through each tier of block pointers that fits in an array.
+ * Run with -prof gc to see the bytes allocated per operation alongside the time taken.
+ *
+ * @author Harry Baines
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileAssemblyBenchmark {
+
+    @Param({ "../src/volumes/ext2fs" })
+    public String volume;                   /* The path to the image */
+
+    @Param({ BenchmarkImage.DIRECT, BenchmarkImage.INDIRECT, BenchmarkImage.DOUBLE_INDIRECT })
+    public String tier;                     /* The tier of block pointers the file assembled needs */
+
+    private Volume vol;                     /* The opened volume */
+    private Ext2File file;                  /* The file assembled */
+
+    /**
+     * Opens the volume and the file for the requested tier.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.vol = BenchmarkImage.open(this.volume, true);
+        this.file = Ext2File.openByInodeNumber(this.vol, BenchmarkImage.findFileForTier(this.vol, this.tier));
+    }
+
+    /**
+     * Closes the file and the volume.
+     * @throws IOException if the volume couldn't be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.file.close();
+        this.vol.close();
+    }
+
+    /**
+     * Assembles the whole file from its data blocks.
+     * @return The bytes of the file.
+     */
+    @Benchmark
+    public byte[] dataBlocks() {
+        return this.file.getiNode().getDataBlocksFromPointers();
+    }
+
+    /**
+     * Reads the whole file through the file API.
+     * @return The bytes of the file.
+     */
+    @Benchmark
+    public byte[] read() {
+        return this.file.read(0L, this.file.getSize());
+    }
+}
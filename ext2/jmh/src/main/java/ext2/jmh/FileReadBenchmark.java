@@ -0,0 +1,104 @@
+package ext2.jmh;
+
+import ext2.Ext2File;
+import ext2.Volume;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name: FileReadBenchmark
+ *
+ * This class measures Ext2File.read() on the largest file reached through each tier of block pointers in the image:
+ * direct, single indirect, double indirect and triple indirect.
+ * The sequential benchmark reads the whole file in chunks, and the random benchmark reads one chunk at a random offset.
+ *
+ * @author Harry Baines
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileReadBenchmark {
+
+    @Param({ "../src/volumes/ext2fs" })
+    public String volume;                   /* The path to the image */
+
+    @Param({ BenchmarkImage.DIRECT, BenchmarkImage.INDIRECT, BenchmarkImage.DOUBLE_INDIRECT, BenchmarkImage.TRIPLE_INDIRECT })
+    public String tier;                     /* The tier of block pointers the file read needs */
+
+    @Param({ "4096", "65536" })
+    public int chunkSize;                   /* The number of bytes read by each call */
+
+    private Volume vol;                     /* The opened volume */
+    private Ext2File file;                  /* The file read */
+    private ByteBuffer buffer;              /* The buffer read into by the sequential benchmark */
+    private SplittableRandom random;        /* Chooses the offsets of random reads */
+
+    /**
+     * Opens the volume and the file for the requested tier.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.vol = BenchmarkImage.open(this.volume, true);
+        this.file = Ext2File.openByInodeNumber(this.vol, BenchmarkImage.findFileForTier(this.vol, this.tier));
+        this.buffer = ByteBuffer.allocate(this.chunkSize);
+        this.random = new SplittableRandom(42);
+    }
+
+    /**
+     * Closes the file and the volume.
+     * @throws IOException if the volume couldn't be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.file.close();
+        this.vol.close();
+    }
+
+    /**
+     * Reads the whole file from the start, one chunk at a time.
+     * @return The number of bytes read.
+     * @throws IOException if the file couldn't be read.
+     */
+    @Benchmark
+    public long sequential() throws IOException {
+        long total = 0;
+        this.file.position(0);
+        int read;
+        while ((read = this.file.read(this.buffer)) > 0) {
+            total += read;
+            this.buffer.clear();
+        }
+        return total;
+    }
+
+    /**
+     * Reads a single chunk at a random offset in the file.
+     * @return The bytes read.
+     */
+    @Benchmark
+    public byte[] random() {
+        long size = this.file.getSize();
+        long length = Math.min(this.chunkSize, size);
+        return this.file.read(this.random.nextLong(size - length + 1), length);
+    }
+}
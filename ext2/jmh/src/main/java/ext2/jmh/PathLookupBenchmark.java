@@ -0,0 +1,84 @@
+package ext2.jmh;
+
+import ext2.Ext2File;
+import ext2.Volume;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name: PathLookupBenchmark
+ *
+ * This class measures how long Ext2File takes to resolve a path to a regular file at several depths.
+ * The default depths are those with a regular file in the shipped image - other depths need an image
+ * generated by ImageGenerator, whose /deep path has a file at any depth up to its "deep" setting plus two.
+ * With the caches enabled repeated lookups are served by the dentry and iNode caches,
+ * and with them disabled every name is searched for in its directory and every iNode parsed again.
+ *
+ * @author Harry Baines
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathLookupBenchmark {
+
+    @Param({ "../src/volumes/ext2fs" })
+    public String volume;                   /* The path to the image */
+
+    @Param({ "1", "2", "9" })
+    public int depth;                       /* The number of names in the path resolved */
+
+    @Param({ "true", "false" })
+    public boolean caches;                  /* True to keep the dentry and iNode caches, false to disable them */
+
+    private Volume vol;                     /* The opened volume */
+    private String path;                    /* The path resolved */
+
+    /**
+     * Opens the volume and finds a file at the requested depth.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.vol = BenchmarkImage.open(this.volume, true);
+        this.path = BenchmarkImage.findFileAtDepth(this.vol, this.depth);
+        if (!this.caches) {
+            this.vol.setDentryCacheSize(0);
+            this.vol.setINodeCacheSize(0);
+        }
+    }
+
+    /**
+     * Closes the volume.
+     * @throws IOException if the volume couldn't be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.vol.close();
+    }
+
+    /**
+     * Opens the file by its path.
+     * @return The size of the file.
+     */
+    @Benchmark
+    public long resolve() {
+        return new Ext2File(this.vol, this.path).getSize();
+    }
+}
@@ -0,0 +1,83 @@
+package ext2.jmh;
+
+import ext2.TreeWalker;
+import ext2.Volume;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name: TreeWalkBenchmark
+ *
+ * This class compares a single threaded walk of the whole directory tree with a parallel walk on a fork-join pool
+ * with a thread for each processor. Each walk visits every entry without reading any file data.
+ *
+ * @author Harry Baines
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeWalkBenchmark {
+
+    @Param({ "../src/volumes/ext2fs" })
+    public String volume;                   /* The path to the image */
+
+    @Param({ "false", "true" })
+    public boolean parallel;                /* True to walk on a fork-join pool, false to walk on the calling thread */
+
+    private Volume vol;                     /* The opened volume */
+    private ForkJoinPool pool;              /* The pool parallel walks run on */
+    private TreeWalker walker;              /* The walker measured */
+
+    /**
+     * Opens the volume and creates the walker.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.vol = BenchmarkImage.open(this.volume, true);
+        if (this.parallel) {
+            this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            this.walker = new TreeWalker(this.vol, this.pool);
+        }
+        else
+            this.walker = new TreeWalker(this.vol);
+    }
+
+    /**
+     * Shuts down the pool and closes the volume.
+     * @throws IOException if the volume couldn't be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (this.pool != null)
+            this.pool.shutdown();
+        this.vol.close();
+    }
+
+    /**
+     * Walks the whole tree.
+     * @return The number of entries visited.
+     */
+    @Benchmark
+    public long walk() {
+        return this.walker.walk("/", (path, entry, isDirectory, depth) -> true);
+    }
+}
@@ -0,0 +1,53 @@
+package ext2.jmh;
+
+import ext2.Volume;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name: VolumeOpenBenchmark
+ *
+ * This class measures the time taken to open a volume and read its super block and group descriptors,
+ * either by memory mapping the image or by reading the whole image into memory.
+ *
+ * @author Harry Baines
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VolumeOpenBenchmark {
+
+    @Param({ "../src/volumes/ext2fs" })
+    public String volume;                   /* The path to the image */
+
+    @Param({ "true", "false" })
+    public boolean memoryMapped;            /* True to memory map the image, false to read it into memory */
+
+    /**
+     * Opens and closes the volume.
+     * @return The total number of blocks, read from the super block.
+     * @throws IOException if the volume couldn't be closed.
+     */
+    @Benchmark
+    public int open() throws IOException {
+        Volume vol = BenchmarkImage.open(this.volume, this.memoryMapped);
+        int totalBlocks = vol.getSuperblock().getTotalBlocks();
+        vol.close();
+        return totalBlocks;
+    }
+}
@@ -0,0 +1,176 @@
+package ext2;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Name: BitmapAnalyzer
+ *
+ * This class analyses the block and iNode bitmaps of every block group in a volume to report how space is used.
+ * Each bitmap is read into an array of longs and counted a word at a time with Long.bitCount(),
+ * and runs of free blocks are found by jumping between set and clear bits with Long.numberOfTrailingZeros(),
+ * so the cost depends on the number of words and runs rather than the number of blocks.
+ * The block groups are split between the threads of a fork-join pool.
+ * The counts from the bitmaps are compared with the free counts stored in each group descriptor.
+ * Usage: java ext2.BitmapAnalyzer volume-path [threads]
+ *
+ * @author Harry Baines
+ * @see SpaceReport
+ * @see BlockGroups
+ */
+public class BitmapAnalyzer {
+
+    private final Volume vol;           /* The volume to analyse */
+    private final ForkJoinPool pool;    /* The pool the groups are analysed on */
+
+    /**
+     * Constructor to initialise an analyzer which runs on the common fork-join pool.
+     * @param vol The volume to analyse.
+     */
+    public BitmapAnalyzer(Volume vol) {
+        this(vol, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor to initialise an analyzer which runs on the given fork-join pool.
+     * @param vol The volume to analyse.
+     * @param pool The pool to analyse on.
+     */
+    public BitmapAnalyzer(Volume vol, ForkJoinPool pool) {
+        this.vol = vol;
+        this.pool = pool;
+    }
+
+    /**
+     * Main method to print the space report of a volume.
+     * @param args The volume path, and optionally the number of threads.
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 1) {
+            System.out.println("Usage: java ext2.BitmapAnalyzer volume-path [threads]");
+            return;
+        }
+
+        Volume vol = new Volume(args[0]);
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long startTime = System.nanoTime();
+            SpaceReport report = new BitmapAnalyzer(vol, pool).analyze();
+            System.out.print(report.getReportString());
+            System.out.println("Time taken (ms):             " + String.format("%.2f", (System.nanoTime() - startTime) / 1e6));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Analyses every block group in parallel.
+     * @return The report of the usage of every group.
+     */
+    public SpaceReport analyze() {
+        SpaceReport.GroupUsage[] groups = new SpaceReport.GroupUsage[this.vol.getGroupDescriptors().length];
+        BlockGroups.forEachGroup(this.pool, groups.length, group -> {
+            groups[group] = this.analyzeGroup(group);
+            return 1;
+        });
+        return new SpaceReport(groups);
+    }
+
+    /**
+     * Analyses the bitmaps of a single block group.
+     * @param group The block group number.
+     * @return The usage of the group.
+     */
+    public SpaceReport.GroupUsage analyzeGroup(int group) {
+
+        SuperBlock superBlock = this.vol.getSuperblock();
+        GroupDescriptor descriptor = this.vol.getGroupDescriptors()[group];
+
+        // The last group may have fewer blocks than the others - bits past the end of the volume are ignored
+        long firstBlock = superBlock.getFirstDataBlock() + (long) group * superBlock.getBlocksPerGroup();
+        int numBlocks = (int) Math.min(superBlock.getBlocksPerGroup(), (superBlock.getTotalBlocks() & 0xFFFFFFFFL) - firstBlock);
+        int numINodes = superBlock.getiNodesPerGroup();
+
+        long[] blockBitmap = BlockGroups.readBitmap(this.vol, descriptor.getBlockBitmapPointer(), numBlocks);
+        long[] iNodeBitmap = BlockGroups.readBitmap(this.vol, descriptor.getiNodeBitmapPointer(), numINodes);
+
+        int usedBlocks = countSetBits(blockBitmap, numBlocks);
+        int usedINodes = countSetBits(iNodeBitmap, numINodes);
+
+        // Jump from the start of each run of free blocks to its end
+        long[] histogram = new long[SpaceReport.HISTOGRAM_BUCKETS];
+        int largestFreeExtent = 0;
+        int start = nextClearBit(blockBitmap, 0, numBlocks);
+        while (start < numBlocks) {
+            int end = nextSetBit(blockBitmap, start, numBlocks);
+            int length = end - start;
+            histogram[31 - Integer.numberOfLeadingZeros(length)]++;
+            largestFreeExtent = Math.max(largestFreeExtent, length);
+            start = nextClearBit(blockBitmap, end, numBlocks);
+        }
+
+        return new SpaceReport.GroupUsage(group, usedBlocks, numBlocks - usedBlocks, usedINodes, numINodes - usedINodes,
+            descriptor.getFreeBlockCount() & 0xFFFF, descriptor.getFreeiNodeCount() & 0xFFFF, histogram, largestFreeExtent);
+    }
+
+    /**
+     * Counts the bits set in a bitmap below a limit.
+     *
+     * @param words The bitmap.
+     * @param limit The number of bits to count.
+     * @return The number of bits set.
+     */
+    private static int countSetBits(long[] words, int limit) {
+        int count = 0;
+        int fullWords = limit / Long.SIZE;
+        for (int word = 0; word < fullWords; word++)
+            count += Long.bitCount(words[word]);
+        if (limit % Long.SIZE != 0)
+            count += Long.bitCount(words[fullWords] & ((1L << limit) - 1));
+        return count;
+    }
+
+    /**
+     * Finds the first set bit at or after an index.
+     *
+     * @param words The bitmap.
+     * @param from The index to search from.
+     * @param limit The number of bits in the bitmap.
+     * @return The index of the set bit, or limit if there is none.
+     */
+    private static int nextSetBit(long[] words, int from, int limit) {
+        if (from >= limit)
+            return limit;
+        int word = from / Long.SIZE;
+        long bits = words[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word >= words.length)
+                return limit;
+            bits = words[word];
+        }
+        return Math.min(limit, word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+    }
+
+    /**
+     * Finds the first clear bit at or after an index.
+     *
+     * @param words The bitmap.
+     * @param from The index to search from.
+     * @param limit The number of bits in the bitmap.
+     * @return The index of the clear bit, or limit if there is none.
+     */
+    private static int nextClearBit(long[] words, int from, int limit) {
+        if (from >= limit)
+            return limit;
+        int word = from / Long.SIZE;
+        long bits = ~words[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word >= words.length)
+                return limit;
+            bits = ~words[word];
+        }
+        return Math.min(limit, word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+    }
+}
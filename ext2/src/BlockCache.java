@@ -0,0 +1,455 @@
+package ext2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Name: BlockCache
+ *
+ * This class represents a bounded cache of whole blocks read from a volume, keyed by physical block number.
+ * Cached blocks are stored off-heap in direct buffers, so the cache budget doesn't add to the Java heap.
+ * The cache is split into segments by block number, each with its own lock, so concurrent readers rarely contend.
+ *
+ * Blocks are evicted least recently used first, but a new block is only admitted in place of the eviction victim
+ * if it has been read more often recently (TinyLFU admission, see FrequencySketch).
+ * This stops a single pass over a large file from pushing out frequently used blocks such as iNode tables and directories.
+ *
+ * @author Harry Baines
+ * @see FrequencySketch
+ */
+public class BlockCache {
+
+    public static final int MAX_SEGMENTS            = 16;     /* The maximum number of independently locked segments */
+    public static final int MIN_BLOCKS_PER_SEGMENT  = 64;     /* The minimum number of blocks held by each segment */
+    public static final long MISS                   = Long.MIN_VALUE;   /* Returned by readInt() and readShort() when the block isn't cached */
+
+    private int blockSize;                  /* The size of each cached block, in bytes */
+    private int maxBlocks;                  /* The maximum number of blocks held by the whole cache */
+    private Segment[] segments;             /* The segments the cached blocks are divided between */
+
+    private LongAdder hitCount;             /* Number of reads served from the cache */
+    private LongAdder missCount;            /* Number of reads not found in the cache */
+    private LongAdder evictionCount;        /* Number of blocks evicted to make room for another block */
+    private LongAdder rejectionCount;       /* Number of blocks not admitted as they were used less than the eviction victim */
+
+    /**
+     * Constructor to initialise a cache within the given budget.
+     * @param maxBytes The maximum number of bytes of block data to hold off-heap.
+     * @param blockSize The size of each block, in bytes.
+     */
+    public BlockCache(long maxBytes, int blockSize) {
+
+        this.blockSize = blockSize;
+
+        // Split the cache into a power of 2 number of segments, each small enough to fit in one direct buffer
+        long totalBlocks = Math.max(1, maxBytes / blockSize);
+        int numSegments = (int) Math.min(MAX_SEGMENTS, Math.max(1, totalBlocks / MIN_BLOCKS_PER_SEGMENT));
+        numSegments = Integer.highestOneBit(numSegments);
+        int blocksPerSegment = (int) Math.min(totalBlocks / numSegments, Integer.MAX_VALUE / blockSize);
+
+        this.maxBlocks = blocksPerSegment * numSegments;
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++)
+            this.segments[i] = new Segment(blocksPerSegment);
+
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.evictionCount = new LongAdder();
+        this.rejectionCount = new LongAdder();
+    }
+
+    /**
+     * Copies part of a block from the cache into the given array, if the block is cached.
+     *
+     * @param blockNum The physical block number.
+     * @param offsetInBlock The offset in the block to begin copying from.
+     * @param dst The array to copy the bytes into.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The number of bytes to copy.
+     * @return True if the block was cached and the bytes copied, false otherwise.
+     */
+    public boolean read(long blockNum, int offsetInBlock, byte[] dst, int dstOffset, int length) {
+        boolean hit = this.segmentFor(blockNum).read(blockNum, offsetInBlock, dst, dstOffset, length);
+        if (hit)
+            this.hitCount.increment();
+        else
+            this.missCount.increment();
+        return hit;
+    }
+
+    /**
+     * Reads the little-endian 32-bit integer at an offset in a block from the cache, if the block is cached.
+     * Nothing is allocated, so iNode fields can be decoded straight from cached iNode table blocks.
+     *
+     * @param blockNum The physical block number.
+     * @param offsetInBlock The offset of the integer in the block, which must lie wholly within the block.
+     * @return The integer, or MISS if the block isn't cached.
+     */
+    public long readInt(long blockNum, int offsetInBlock) {
+        return this.readNumber(blockNum, offsetInBlock, Integer.BYTES);
+    }
+
+    /**
+     * Reads the little-endian 16-bit integer at an offset in a block from the cache, if the block is cached.
+     *
+     * @param blockNum The physical block number.
+     * @param offsetInBlock The offset of the integer in the block, which must lie wholly within the block.
+     * @return The integer, or MISS if the block isn't cached.
+     */
+    public long readShort(long blockNum, int offsetInBlock) {
+        return this.readNumber(blockNum, offsetInBlock, Short.BYTES);
+    }
+
+    /**
+     * Reads an integer of the given size from a block in the cache, counting the hit or miss.
+     *
+     * @param blockNum The physical block number.
+     * @param offsetInBlock The offset of the integer in the block.
+     * @param size The size of the integer, in bytes.
+     * @return The integer, or MISS if the block isn't cached.
+     */
+    private long readNumber(long blockNum, int offsetInBlock, int size) {
+        long value = this.segmentFor(blockNum).readNumber(blockNum, offsetInBlock, size);
+        if (value != MISS)
+            this.hitCount.increment();
+        else
+            this.missCount.increment();
+        return value;
+    }
+
+    /**
+     * Offers a block which has just been read from the volume to the cache.
+     * The block may not be admitted if the cache is full of more frequently used blocks.
+     *
+     * @param blockNum The physical block number.
+     * @param src The array containing the whole block.
+     * @param srcOffset The offset in the array the block begins at.
+     */
+    public void put(long blockNum, byte[] src, int srcOffset) {
+        this.segmentFor(blockNum).put(blockNum, src, srcOffset);
+    }
+
+    /**
+     * Returns the segment responsible for the given block.
+     * @param blockNum The physical block number.
+     * @return The segment the block is cached in.
+     */
+    private Segment segmentFor(long blockNum) {
+        return this.segments[(int) (mix(blockNum) >>> 40) & (this.segments.length - 1)];
+    }
+
+    /**
+     * Spreads the bits of a block number so that consecutive blocks hash to unrelated values.
+     * @param key The value to mix.
+     * @return The mixed value.
+     */
+    public static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * Obtains the number of reads served from the cache.
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    /**
+     * Obtains the number of reads that were not found in the cache.
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+
+    /**
+     * Obtains the number of blocks evicted from the cache.
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    /**
+     * Obtains the number of blocks the admission filter refused to cache.
+     * @return The rejection count.
+     */
+    public long getRejectionCount() {
+        return this.rejectionCount.sum();
+    }
+
+    /**
+     * Obtains the fraction of reads served from the cache.
+     * @return The hit rate, from 0 to 1.
+     */
+    public double getHitRate() {
+        long requests = this.getHitCount() + this.getMissCount();
+        return (requests == 0) ? 0 : (double) this.getHitCount() / requests;
+    }
+
+    /**
+     * Obtains the number of blocks currently cached.
+     * @return The number of cached blocks.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : this.segments)
+            size += segment.getSize();
+        return size;
+    }
+
+    /**
+     * Obtains the maximum number of blocks the cache can hold.
+     * @return The cache capacity in blocks.
+     */
+    public int getMaxBlocks() {
+        return this.maxBlocks;
+    }
+
+    /**
+     * Returns a String containing the cache statistics.
+     * @return A String of cache statistics.
+     */
+    public String getStatsString() {
+        String stats = "";
+        stats += "Cached blocks:     " + this.getSize() + " / " + this.getMaxBlocks() + "\n";
+        stats += "Hits:              " + this.getHitCount() + "\n";
+        stats += "Misses:            " + this.getMissCount() + "\n";
+        stats += "Hit rate:          " + String.format("%.2f%%", this.getHitRate() * 100) + "\n";
+        stats += "Evictions:         " + this.getEvictionCount() + "\n";
+        stats += "Rejections:        " + this.getRejectionCount() + "\n";
+        return stats;
+    }
+
+    /**
+     * Title: Segment
+     *
+     * This inner class holds a share of the cached blocks in one direct buffer, with its own recency list and frequency sketch.
+     * Slots in the buffer are linked in order of use, most recently used first, using arrays of slot indexes.
+     *
+     * @author Harry Baines
+     */
+    private class Segment {
+
+        private ByteBuffer storage;         /* Off-heap storage for the cached blocks, one block per slot */
+        private int capacity;               /* The number of slots in this segment */
+        private int size;                   /* The number of slots in use */
+
+        private long[] slotBlocks;          /* The block number held in each slot */
+        private int[] prev;                 /* The more recently used neighbour of each slot, or -1 */
+        private int[] next;                 /* The less recently used neighbour of each slot, or -1 */
+        private int head;                   /* The most recently used slot, or -1 */
+        private int tail;                   /* The least recently used slot, or -1 */
+
+        private BlockIndex index;           /* Finds the slot holding a block number */
+        private FrequencySketch sketch;     /* Recent frequency of every block read through this segment */
+
+        /**
+         * Constructor to allocate a segment with the given number of slots.
+         * @param capacity The number of blocks this segment can hold.
+         */
+        public Segment(int capacity) {
+            this.capacity = capacity;
+            this.storage = ByteBuffer.allocateDirect(capacity * BlockCache.this.blockSize);
+            this.storage.order(ByteOrder.LITTLE_ENDIAN);
+            this.slotBlocks = new long[capacity];
+            this.prev = new int[capacity];
+            this.next = new int[capacity];
+            this.head = -1;
+            this.tail = -1;
+            this.index = new BlockIndex(capacity);
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        /**
+         * Copies part of a cached block into the given array and marks the block as most recently used.
+         * Every read is counted by the sketch, whether or not the block is cached.
+         *
+         * @return True if the block was cached.
+         */
+        public synchronized boolean read(long blockNum, int offsetInBlock, byte[] dst, int dstOffset, int length) {
+            this.sketch.increment(blockNum);
+            int slot = this.index.get(blockNum);
+            if (slot < 0)
+                return false;
+
+            this.unlink(slot);
+            this.linkFirst(slot);
+            this.storage.get(slot * BlockCache.this.blockSize + offsetInBlock, dst, dstOffset, length);
+            return true;
+        }
+
+        /**
+         * Reads a little-endian integer from a cached block and marks the block as most recently used.
+         * Every read is counted by the sketch, whether or not the block is cached.
+         *
+         * @return The integer, or MISS if the block isn't cached.
+         */
+        public synchronized long readNumber(long blockNum, int offsetInBlock, int size) {
+            this.sketch.increment(blockNum);
+            int slot = this.index.get(blockNum);
+            if (slot < 0)
+                return MISS;
+
+            this.unlink(slot);
+            this.linkFirst(slot);
+            int position = slot * BlockCache.this.blockSize + offsetInBlock;
+            return (size == Integer.BYTES) ? this.storage.getInt(position) : this.storage.getShort(position);
+        }
+
+        /**
+         * Caches a block, evicting the least recently used block if the segment is full.
+         * When full, the block is only admitted if it has been read more often than the block it would evict.
+         */
+        public synchronized void put(long blockNum, byte[] src, int srcOffset) {
+            if (this.index.get(blockNum) >= 0)
+                return;
+
+            int slot;
+            if (this.size < this.capacity)
+                slot = this.size++;
+            else {
+                slot = this.tail;
+                if (this.sketch.frequency(blockNum) <= this.sketch.frequency(this.slotBlocks[slot])) {
+                    BlockCache.this.rejectionCount.increment();
+                    return;
+                }
+                this.unlink(slot);
+                this.index.remove(this.slotBlocks[slot]);
+                BlockCache.this.evictionCount.increment();
+            }
+
+            this.storage.put(slot * BlockCache.this.blockSize, src, srcOffset, BlockCache.this.blockSize);
+            this.slotBlocks[slot] = blockNum;
+            this.index.put(blockNum, slot);
+            this.linkFirst(slot);
+        }
+
+        /**
+         * Removes a slot from the recency list.
+         * @param slot The slot to remove.
+         */
+        private void unlink(int slot) {
+            if (this.prev[slot] >= 0)
+                this.next[this.prev[slot]] = this.next[slot];
+            else
+                this.head = this.next[slot];
+
+            if (this.next[slot] >= 0)
+                this.prev[this.next[slot]] = this.prev[slot];
+            else
+                this.tail = this.prev[slot];
+        }
+
+        /**
+         * Adds a slot to the front of the recency list.
+         * @param slot The slot to add.
+         */
+        private void linkFirst(int slot) {
+            this.prev[slot] = -1;
+            this.next[slot] = this.head;
+            if (this.head >= 0)
+                this.prev[this.head] = slot;
+            this.head = slot;
+            if (this.tail < 0)
+                this.tail = slot;
+        }
+
+        /**
+         * Obtains the number of blocks held by this segment.
+         * @return The number of cached blocks.
+         */
+        public synchronized int getSize() {
+            return this.size;
+        }
+    }
+
+    /**
+     * Title: BlockIndex
+     *
+     * This inner class maps block numbers to slots using open addressing, so lookups don't box the block number.
+     *
+     * @author Harry Baines
+     */
+    private static class BlockIndex {
+
+        private long[] keys;        /* The block number in each bucket */
+        private int[] slots;        /* The slot for the block in each bucket, or -1 for an empty bucket */
+        private int mask;           /* Mask to find a bucket from a hash */
+
+        /**
+         * Constructor to size the index for the given number of blocks, keeping it at most half full.
+         * @param capacity The maximum number of blocks that will be indexed.
+         */
+        public BlockIndex(int capacity) {
+            int buckets = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            this.keys = new long[buckets];
+            this.slots = new int[buckets];
+            this.mask = buckets - 1;
+            Arrays.fill(this.slots, -1);
+        }
+
+        /**
+         * Finds the slot for a block.
+         * @param key The block number.
+         * @return The slot, or -1 if the block isn't indexed.
+         */
+        public int get(long key) {
+            for (int i = this.bucketOf(key); this.slots[i] >= 0; i = (i + 1) & this.mask)
+                if (this.keys[i] == key)
+                    return this.slots[i];
+            return -1;
+        }
+
+        /**
+         * Indexes a block which isn't already indexed.
+         * @param key The block number.
+         * @param slot The slot holding the block.
+         */
+        public void put(long key, int slot) {
+            int i = this.bucketOf(key);
+            while (this.slots[i] >= 0)
+                i = (i + 1) & this.mask;
+            this.keys[i] = key;
+            this.slots[i] = slot;
+        }
+
+        /**
+         * Removes a block from the index, shifting back any later entries in the same run of buckets.
+         * @param key The block number.
+         */
+        public void remove(long key) {
+            int i = this.bucketOf(key);
+            while (this.slots[i] >= 0 && this.keys[i] != key)
+                i = (i + 1) & this.mask;
+            if (this.slots[i] < 0)
+                return;
+
+            // Move later entries back into the gap if their home bucket allows it
+            int gap = i;
+            for (int j = (gap + 1) & this.mask; this.slots[j] >= 0; j = (j + 1) & this.mask) {
+                int home = this.bucketOf(this.keys[j]);
+                if (((j - home) & this.mask) >= ((j - gap) & this.mask)) {
+                    this.keys[gap] = this.keys[j];
+                    this.slots[gap] = this.slots[j];
+                    gap = j;
+                }
+            }
+            this.slots[gap] = -1;
+        }
+
+        /**
+         * Finds the home bucket for a block number.
+         * @param key The block number.
+         * @return The bucket index.
+         */
+        private int bucketOf(long key) {
+            return (int) mix(key) & this.mask;
+        }
+    }
+}
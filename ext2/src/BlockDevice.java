@@ -0,0 +1,98 @@
+package ext2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Name: BlockDevice
+ *
+ * This interface represents the device a volume is stored on, providing positional reads of bytes from the device.
+ * Implementations keep no read position between calls, so any number of threads can read from one device at once without locking.
+ *
+ * @author Harry Baines
+ * @see Volume
+ */
+public interface BlockDevice extends Closeable {
+
+    /**
+     * Copies length bytes starting at byte offset position on the device into the given array.
+     *
+     * @param position The byte offset on the device to begin reading from.
+     * @param dst The array to copy the bytes into.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The total number of bytes to read.
+     * @throws java.io.UncheckedIOException if the device couldn't be read.
+     */
+    void read(long position, byte[] dst, int dstOffset, int length);
+
+    /**
+     * Reads the little-endian 32-bit integer at byte offset position on the device.
+     * By default the bytes are read into a temporary array.
+     *
+     * @param position The byte offset on the device of the integer.
+     * @return The integer.
+     * @throws java.io.UncheckedIOException if the device couldn't be read.
+     */
+    default int readInt(long position) {
+        byte[] bytes = new byte[Integer.BYTES];
+        this.read(position, bytes, 0, bytes.length);
+        return (bytes[0] & 0xFF) | (bytes[1] & 0xFF) << 8 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 24;
+    }
+
+    /**
+     * Reads the little-endian 16-bit integer at byte offset position on the device.
+     * By default the bytes are read into a temporary array.
+     *
+     * @param position The byte offset on the device of the integer.
+     * @return The integer.
+     * @throws java.io.UncheckedIOException if the device couldn't be read.
+     */
+    default short readShort(long position) {
+        byte[] bytes = new byte[Short.BYTES];
+        this.read(position, bytes, 0, bytes.length);
+        return (short) ((bytes[0] & 0xFF) | (bytes[1] & 0xFF) << 8);
+    }
+
+    /**
+     * Writes count bytes starting at byte offset position on the device to the given channel.
+     * Implementations avoid copying the bytes onto the heap where the device allows it.
+     * By default the bytes are copied through a heap buffer.
+     *
+     * @param position The byte offset on the device to begin reading from.
+     * @param count The total number of bytes to write.
+     * @param target The channel to write the bytes to.
+     * @throws IOException if the bytes couldn't be written.
+     */
+    default void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(count, 64 * 1024)];
+        while (count > 0) {
+            int toCopy = (int) Math.min(count, buffer.length);
+            this.read(position, buffer, 0, toCopy);
+            BlockDevice.writeFully(ByteBuffer.wrap(buffer, 0, toCopy), target);
+            position += toCopy;
+            count -= toCopy;
+        }
+    }
+
+    /**
+     * Writes every remaining byte of a buffer to a channel, shared by the transfers from every device.
+     * A non-blocking channel may accept no bytes, so rather than spinning until it has room the write fails.
+     *
+     * @param src The buffer to write, whose position is advanced past the bytes written.
+     * @param target The channel to write to.
+     * @throws IOException if the bytes couldn't be written, or the channel accepted no bytes.
+     */
+    static void writeFully(ByteBuffer src, WritableByteChannel target) throws IOException {
+        while (src.hasRemaining())
+            if (target.write(src) <= 0)
+                throw new IOException("The target accepted no bytes with " + src.remaining() + " bytes left to write");
+    }
+
+    /**
+     * Returns the total size of the device, in bytes.
+     * @return The device size.
+     */
+    long size();
+}
@@ -0,0 +1,103 @@
+package ext2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Name: BlockGroups
+ *
+ * This class holds the work shared by the tools which process every block group of a volume in parallel.
+ * The groups are split between the threads of a fork-join pool by halving the range of groups until a single group remains,
+ * and bitmaps are read into arrays of longs so they can be processed a word at a time.
+ *
+ * @author Harry Baines
+ * @see INodeScanner
+ * @see BitmapAnalyzer
+ */
+final class BlockGroups {
+
+    /**
+     * Private constructor, as this class only holds static methods.
+     */
+    private BlockGroups() {
+    }
+
+    /**
+     * Applies a function to every block group in parallel and sums the results.
+     *
+     * @param pool The pool to run on.
+     * @param numGroups The number of block groups.
+     * @param groupFunction The function to apply to each group number.
+     * @return The sum of the results of the function for every group.
+     */
+    public static long forEachGroup(ForkJoinPool pool, int numGroups, IntToLongFunction groupFunction) {
+        return pool.invoke(new GroupRangeTask(groupFunction, 0, numGroups));
+    }
+
+    /**
+     * Reads a bitmap into an array of longs, with the bit for entry n at bit (n % 64) of word (n / 64).
+     *
+     * @param vol The volume to read from.
+     * @param blockPointer The block number of the bitmap.
+     * @param numBits The number of bits in use in the bitmap.
+     * @return The bitmap.
+     */
+    public static long[] readBitmap(Volume vol, int blockPointer, int numBits) {
+
+        int bitmapLength = (numBits + 7) / 8;
+        byte[] bitmap = new byte[(bitmapLength + Long.BYTES - 1) / Long.BYTES * Long.BYTES];
+        vol.readBytes((blockPointer & 0xFFFFFFFFL) * vol.getSuperblock().getBlockSize(), bitmap, 0, bitmapLength);
+        ByteBuffer bitmapBuffer = ByteBuffer.wrap(bitmap);
+        bitmapBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        long[] words = new long[bitmap.length / Long.BYTES];
+        for (int word = 0; word < words.length; word++)
+            words[word] = bitmapBuffer.getLong(word * Long.BYTES);
+        return words;
+    }
+
+    /**
+     * Title: GroupRangeTask
+     *
+     * This inner class processes a range of block groups, splitting the range in half until a single group remains.
+     *
+     * @author Harry Baines
+     */
+    private static class GroupRangeTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntToLongFunction groupFunction;  /* The function to apply to each group number */
+        private final int fromGroup;                    /* The first group in the range */
+        private final int toGroup;                      /* The group after the last group in the range */
+
+        /**
+         * Constructor to initialise a task for a range of groups.
+         *
+         * @param groupFunction The function to apply to each group number.
+         * @param fromGroup The first group in the range.
+         * @param toGroup The group after the last group in the range.
+         */
+        private GroupRangeTask(IntToLongFunction groupFunction, int fromGroup, int toGroup) {
+            this.groupFunction = groupFunction;
+            this.fromGroup = fromGroup;
+            this.toGroup = toGroup;
+        }
+
+        @Override
+        protected Long compute() {
+
+            if (this.toGroup - this.fromGroup <= 1)
+                return (this.fromGroup < this.toGroup) ? this.groupFunction.applyAsLong(this.fromGroup) : 0L;
+
+            int middle = (this.fromGroup + this.toGroup) >>> 1;
+            GroupRangeTask left = new GroupRangeTask(this.groupFunction, this.fromGroup, middle);
+            GroupRangeTask right = new GroupRangeTask(this.groupFunction, middle, this.toGroup);
+            left.fork();
+            return right.compute() + left.join();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package ext2;
+
+import java.util.Arrays;
+
+/**
+ * Name: BlockMap
+ *
+ * This class maps the logical blocks of a file to physical blocks on the volume.
+ * The map is stored as a sorted list of extents, each a run of logical blocks which are either contiguous on the volume
+ * or are a hole in the file, so a file whose blocks are allocated contiguously needs only a handful of extents.
+ * Once built the map never changes, so it can be shared by any number of readers.
+ *
+ * @author Harry Baines
+ * @see INode
+ */
+public class BlockMap {
+
+    public static final int INITIAL_EXTENTS = 4;    /* Number of extents space is initially allocated for */
+
+    private long[] logicalStarts;                   /* The first logical block of each extent */
+    private long[] physicalStarts;                  /* The first physical block of each extent, or 0 for a hole */
+    private int[] lengths;                          /* The number of blocks in each extent */
+    private int numExtents;                         /* The number of extents in the map */
+    private long numBlocks;                         /* The total number of logical blocks covered by the map */
+
+    /**
+     * Constructor to initialise an empty block map, ready for blocks to be appended.
+     */
+    public BlockMap() {
+        this.logicalStarts = new long[INITIAL_EXTENTS];
+        this.physicalStarts = new long[INITIAL_EXTENTS];
+        this.lengths = new int[INITIAL_EXTENTS];
+    }
+
+    /**
+     * Appends a run of blocks to the end of the map, merging it into the last extent where possible.
+     * Only used while building the map.
+     *
+     * @param physicalStart The physical block of the first block in the run, or 0 for a hole.
+     * @param count The number of blocks in the run.
+     */
+    public void append(long physicalStart, long count) {
+
+        while (count > 0) {
+            int last = this.numExtents - 1;
+            boolean lastIsHole = last >= 0 && this.physicalStarts[last] == 0;
+
+            // Extend the last extent if the run carries straight on from it
+            if (last >= 0 && this.lengths[last] < Integer.MAX_VALUE && 
+                    ((physicalStart == 0) ? lastIsHole : !lastIsHole && this.physicalStarts[last] + this.lengths[last] == physicalStart)) {
+                int added = (int) Math.min(count, Integer.MAX_VALUE - this.lengths[last]);
+                this.lengths[last] += added;
+                this.numBlocks += added;
+                count -= added;
+                physicalStart = (physicalStart == 0) ? 0 : physicalStart + added;
+                continue;
+            }
+
+            if (this.numExtents == this.lengths.length) {
+                this.logicalStarts = Arrays.copyOf(this.logicalStarts, this.numExtents * 2);
+                this.physicalStarts = Arrays.copyOf(this.physicalStarts, this.numExtents * 2);
+                this.lengths = Arrays.copyOf(this.lengths, this.numExtents * 2);
+            }
+
+            // Start a new extent
+            int added = (int) Math.min(count, Integer.MAX_VALUE);
+            this.logicalStarts[this.numExtents] = this.numBlocks;
+            this.physicalStarts[this.numExtents] = physicalStart;
+            this.lengths[this.numExtents] = added;
+            this.numExtents++;
+            this.numBlocks += added;
+            count -= added;
+            physicalStart = (physicalStart == 0) ? 0 : physicalStart + added;
+        }
+    }
+
+    /**
+     * Releases the unused space at the end of the extent arrays once the map has been built.
+     */
+    public void trim() {
+        this.logicalStarts = Arrays.copyOf(this.logicalStarts, this.numExtents);
+        this.physicalStarts = Arrays.copyOf(this.physicalStarts, this.numExtents);
+        this.lengths = Arrays.copyOf(this.lengths, this.numExtents);
+    }
+
+    /**
+     * Finds the extent containing a logical block using a binary search.
+     * @param logicalBlock The block number from the start of the file.
+     * @return The index of the extent, or -1 if the block is beyond the end of the map.
+     */
+    public int findExtent(long logicalBlock) {
+
+        if (logicalBlock < 0 || logicalBlock >= this.numBlocks)
+            return -1;
+
+        int low = 0;
+        int high = this.numExtents - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this.logicalStarts[mid] <= logicalBlock)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * Translates a logical block number in the file to the physical block number on the volume.
+     * @param logicalBlock The block number from the start of the file.
+     * @return The physical block number, or 0 if the block is in a hole or beyond the end of the map.
+     */
+    public long getPhysicalBlock(long logicalBlock) {
+        int extent = this.findExtent(logicalBlock);
+        if (extent < 0 || this.isHole(extent))
+            return 0;
+        return this.physicalStarts[extent] + (logicalBlock - this.logicalStarts[extent]);
+    }
+
+    /**
+     * Finds the first logical block at or after the given block which is stored on the volume.
+     * @param logicalBlock The block number from the start of the file to search from.
+     * @return The first data block, or -1 if there are only holes from the given block to the end of the map.
+     */
+    public long nextDataBlock(long logicalBlock) {
+        int extent = this.findExtent(Math.max(logicalBlock, 0));
+        if (extent < 0)
+            return -1;
+        if (!this.isHole(extent))
+            return Math.max(logicalBlock, 0);
+
+        // Skip any following holes
+        while (extent < this.numExtents && this.isHole(extent))
+            extent++;
+        return (extent < this.numExtents) ? this.logicalStarts[extent] : -1;
+    }
+
+    /**
+     * Finds the first logical block at or after the given block which is a hole.
+     * The end of the map counts as a hole, as with SEEK_HOLE.
+     * @param logicalBlock The block number from the start of the file to search from.
+     * @return The first hole block, or the number of blocks in the map if there are no holes before the end.
+     */
+    public long nextHoleBlock(long logicalBlock) {
+        int extent = this.findExtent(Math.max(logicalBlock, 0));
+        if (extent < 0)
+            return this.numBlocks;
+        if (this.isHole(extent))
+            return Math.max(logicalBlock, 0);
+
+        // Skip any following runs of data, which aren't merged unless they are contiguous on the volume
+        while (extent < this.numExtents && !this.isHole(extent))
+            extent++;
+        return (extent < this.numExtents) ? this.logicalStarts[extent] : this.numBlocks;
+    }
+
+    /**
+     * Obtains the number of extents in the map.
+     * @return The number of extents.
+     */
+    public int getExtentCount() {
+        return this.numExtents;
+    }
+
+    /**
+     * Obtains the total number of logical blocks covered by the map.
+     * @return The number of blocks.
+     */
+    public long getBlockCount() {
+        return this.numBlocks;
+    }
+
+    /**
+     * Obtains the first logical block of an extent.
+     * @param extent The index of the extent.
+     * @return The first logical block.
+     */
+    public long getLogicalStart(int extent) {
+        return this.logicalStarts[extent];
+    }
+
+    /**
+     * Obtains the first physical block of an extent.
+     * @param extent The index of the extent.
+     * @return The first physical block, or 0 for a hole.
+     */
+    public long getPhysicalStart(int extent) {
+        return this.physicalStarts[extent];
+    }
+
+    /**
+     * Obtains the number of blocks in an extent.
+     * @param extent The index of the extent.
+     * @return The number of blocks.
+     */
+    public int getLength(int extent) {
+        return this.lengths[extent];
+    }
+
+    /**
+     * Returns true if an extent is a hole in the file.
+     * @param extent The index of the extent.
+     * @return True for a hole, false for blocks stored on the volume.
+     */
+    public boolean isHole(int extent) {
+        return this.physicalStarts[extent] == 0;
+    }
+}
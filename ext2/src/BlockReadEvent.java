@@ -0,0 +1,42 @@
+package ext2;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Name: BlockReadEvent
+ *
+ * This class is the JDK Flight Recorder event emitted for each read of bytes from a volume, i.e. each call of
+ * Volume.readBytes(), which DataBlock.readBlock() and every read of file data go through.
+ * Unless a recording has the event enabled, or metrics are on, no event object is allocated and the read is neither
+ * timed nor committed.
+ *
+ * @author Harry Baines
+ * @see Volume
+ */
+@Name("ext2.BlockRead")
+@Label("Block Read")
+@Category({ "ext2", "I/O" })
+@Description("Bytes read from an ext2 volume")
+final class BlockReadEvent extends Event {
+
+    @Label("Block")
+    @Description("The first block read")
+    long block;                 /* The block number of the first block read */
+
+    @Label("Blocks")
+    @Description("The number of blocks covered by the read")
+    int blocks;                 /* The number of blocks covered by the read */
+
+    @Label("Bytes")
+    @DataAmount
+    int bytes;                  /* The number of bytes read */
+
+    @Label("Cache Hit")
+    @Description("True if every block was served from the block cache")
+    boolean cacheHit;           /* True if every block was served from the block cache */
+}
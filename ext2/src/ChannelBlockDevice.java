@@ -0,0 +1,100 @@
+package ext2;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Name: ChannelBlockDevice
+ *
+ * This class represents a block device backed by a file channel.
+ * Every read is a positional read on the channel, so nothing is held in memory and the channel position is never changed.
+ *
+ * @author Harry Baines
+ * @see BlockDevice
+ */
+public class ChannelBlockDevice implements BlockDevice {
+
+    private FileChannel channel;    /* The channel reads are made from */
+    private long size;              /* The size of the file the channel reads from, in bytes */
+
+    /**
+     * Constructor to open a file channel to the given file.
+     * @param filePath The file path to the volume.
+     * @throws IOException if the file couldn't be opened.
+     */
+    public ChannelBlockDevice(String filePath) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.size = this.channel.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void read(long position, byte[] dst, int dstOffset, int length) {
+
+        ByteBuffer dstBuffer = ByteBuffer.wrap(dst, dstOffset, length);
+
+        // A positional read may return fewer bytes than requested, so keep reading until the buffer is full
+        try {
+            while (dstBuffer.hasRemaining()) {
+                int bytesRead = this.channel.read(dstBuffer, position);
+                if (bytesRead < 0)
+                    throw new EOFException("Reached the end of the device at byte " + position);
+                position += bytesRead;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Uses FileChannel.transferTo, which lets the operating system copy the bytes without them passing through the heap.
+     * A transfer that makes no progress, e.g. to a full non-blocking target, is an error rather than being retried.
+     */
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        while (count > 0) {
+            long transferred = this.channel.transferTo(position, count, target);
+            if (transferred <= 0) {
+                if (position >= this.size)
+                    throw new EOFException("Reached the end of the device at byte " + position);
+                throw new IOException("The target accepted no bytes at byte " + position + " of the device");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Closes the underlying file channel.
+     * @throws IOException if the channel couldn't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Returns the file channel this device reads from.
+     * @return The file channel.
+     */
+    public FileChannel getChannel() {
+        return this.channel;
+    }
+}
@@ -1,7 +1,5 @@
 package ext2;
 
-import java.nio.ByteBuffer;
-
 /**
  * Name: DataBlock
  *
@@ -32,13 +30,9 @@ public abstract class DataBlock {
      */
     public byte[] readBlock(long startByte, long length) {
 
-        // Obtain entire buffer and read portion of this into new arrays
-        ByteBuffer buf = this.vol.getByteBuffer();
+        // Read portion of the volume into new array
         byte[] byteArray = new byte[(int) length];
-
-        // Transfer specified length of bytes into array
-        buf.position((int) startByte);
-        buf.get(byteArray);
+        this.vol.readBytes(startByte, byteArray, 0, (int) length);
         return byteArray;
     }
 
@@ -0,0 +1,167 @@
+package ext2;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Name: DentryCache
+ *
+ * This class represents a bounded cache of directory entries for a volume, used to resolve file paths.
+ * Each entry maps a name in a parent directory to the iNode number it refers to.
+ * Names which don't exist are cached too (as negative entries), so repeated lookups of missing files are also cheap.
+ * The volume is read only, so cached entries never become stale. When the cache is full the least recently used entry is evicted.
+ * The cache is split into independently locked segments, so parallel walks and extractions rarely contend on it.
+ *
+ * @author Harry Baines
+ * @see Volume
+ */
+public class DentryCache {
+
+    public static final int NOT_CACHED = -1;                /* Returned by get() when the name isn't in the cache */
+    public static final int NOT_FOUND = 0;                  /* The iNode number cached for a name which doesn't exist */
+
+    private StripedLruCache<Dentry, Integer> dentries;      /* Cached entries, keyed by parent directory and name */
+
+    private LongAdder hitCount;                             /* Number of lookups served from the cache, including negative entries */
+    private LongAdder negativeHitCount;                     /* Number of lookups served by a negative entry */
+    private LongAdder missCount;                            /* Number of lookups not found in the cache */
+
+    /**
+     * Constructor to initialise an empty cache.
+     * @param maxSize The maximum number of entries to hold, or 0 to hold none so every lookup misses.
+     */
+    public DentryCache(int maxSize) {
+        this.dentries = new StripedLruCache<Dentry, Integer>(maxSize);
+        this.hitCount = new LongAdder();
+        this.negativeHitCount = new LongAdder();
+        this.missCount = new LongAdder();
+    }
+
+    /**
+     * Looks up the iNode number for a name in a directory.
+     *
+     * @param parentINodeNumber The iNode number of the directory.
+     * @param name The name of the entry in the directory.
+     * @return The iNode number, NOT_FOUND if the name is known not to exist, or NOT_CACHED if the name isn't cached.
+     */
+    public int get(int parentINodeNumber, String name) {
+        Integer iNodeNumber = this.dentries.get(new Dentry(parentINodeNumber, name));
+        if (iNodeNumber == null) {
+            this.missCount.increment();
+            return NOT_CACHED;
+        }
+        this.hitCount.increment();
+        if (iNodeNumber == NOT_FOUND)
+            this.negativeHitCount.increment();
+        return iNodeNumber;
+    }
+
+    /**
+     * Caches the iNode number for a name in a directory.
+     *
+     * @param parentINodeNumber The iNode number of the directory.
+     * @param name The name of the entry in the directory.
+     * @param iNodeNumber The iNode number the name refers to, or NOT_FOUND if the name doesn't exist.
+     */
+    public void put(int parentINodeNumber, String name, int iNodeNumber) {
+        this.dentries.put(new Dentry(parentINodeNumber, name), iNodeNumber);
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void clear() {
+        this.dentries.clear();
+    }
+
+    /**
+     * Obtains the number of lookups served from the cache, including negative entries.
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    /**
+     * Obtains the number of lookups served by a negative entry.
+     * @return The negative hit count.
+     */
+    public long getNegativeHitCount() {
+        return this.negativeHitCount.sum();
+    }
+
+    /**
+     * Obtains the number of lookups that were not found in the cache.
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+
+    /**
+     * Obtains the number of entries evicted from the cache.
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return this.dentries.getEvictionCount();
+    }
+
+    /**
+     * Obtains the number of entries currently cached.
+     * @return The number of cached entries.
+     */
+    public int getSize() {
+        return this.dentries.getSize();
+    }
+
+    /**
+     * Returns a String containing the cache statistics.
+     * @return A String of cache statistics.
+     */
+    public String getStatsString() {
+        long hits = this.getHitCount();
+        long requests = hits + this.getMissCount();
+        String stats = "";
+        stats += "Cached entries:    " + this.getSize() + " / " + this.dentries.getMaxSize() + "\n";
+        stats += "Hits:              " + hits + " (" + this.getNegativeHitCount() + " negative)\n";
+        stats += "Misses:            " + (requests - hits) + "\n";
+        stats += "Hit rate:          " + String.format("%.2f%%", (requests == 0) ? 0.0 : 100.0 * hits / requests) + "\n";
+        stats += "Evictions:         " + this.getEvictionCount() + "\n";
+        return stats;
+    }
+
+    /**
+     * Title: Dentry
+     *
+     * This inner class is the cache key - a name within a parent directory.
+     *
+     * @author Harry Baines
+     */
+    private static class Dentry {
+
+        private int parentINodeNumber;      /* The iNode number of the directory */
+        private String name;                /* The name of the entry in the directory */
+
+        /**
+         * Constructor to initialise a key.
+         * @param parentINodeNumber The iNode number of the directory.
+         * @param name The name of the entry in the directory.
+         */
+        public Dentry(int parentINodeNumber, String name) {
+            this.parentINodeNumber = parentINodeNumber;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Dentry))
+                return false;
+            Dentry other = (Dentry) o;
+            return this.parentINodeNumber == other.parentINodeNumber && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.parentINodeNumber + this.name.hashCode();
+        }
+    }
+}
@@ -2,8 +2,12 @@ package ext2;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.NoSuchElementException;
 
 /** 
  * Name: Directory
@@ -15,18 +19,27 @@ import java.util.ArrayList;
  * @author Harry Baines
  * @see DataBlock
  */
-public class Directory extends DataBlock {
+public class Directory extends DataBlock implements Iterable<DirectoryEntry> {
 
     public static final int INODE_LENGTH    = 4;    /* The length of an iNode in a directory listing in bytes */
     public static final int NAME_LEN_OFFSET = 6;    /* The offset to find the namelen field in a directory listing */
+    public static final int FILE_TYPE_OFFSET = 7;   /* The offset to find the file type field in a directory listing */
     public static final int FILENAME_OFFSET = 8;    /* The offset to find the filename in a directory listing */
+
+    public static final int DX_ROOT_INFO_OFFSET   = 24; /* The offset of the hashed index information in the first block */
+    public static final int DX_HASH_VERSION_OFFSET = 28; /* The offset of the hash version in the first block */
+    public static final int DX_INFO_LENGTH_OFFSET = 29; /* The offset of the length of the hashed index information in the first block */
+    public static final int DX_LEVELS_OFFSET      = 30; /* The offset of the number of levels of index nodes below the root */
+    public static final int DX_NODE_ENTRIES_OFFSET = 8; /* The offset of the index entries in an index node below the root */
+    public static final int DX_ENTRY_LENGTH       = 8;  /* The length of an index entry (hash, block) in bytes */
+    public static final int DX_MAX_LEVELS         = 3;  /* The maximum depth of index nodes below the root */
     
     private Ext2File file;                          /* Reference to the file - would print directory contents for this file once instance is created */
 
     private ByteBuffer dirDataBuffer;               /* Buffer to store bytes in this directory */
     private SuperBlock superBlock;                  /* Stores a reference to the super block for file system information */
-
-    private INode nextINode;                        /* Stores the iNode of the next file in this directory */
+    private INode dirINode;                         /* The iNode of this directory, if known */
+    private Metrics metrics;                        /* The volume's metrics, or null if metrics are disabled */
 
     /**
      * Constructor to initialise a directory with a given file and initialise relevant instance variables.
@@ -37,6 +50,272 @@ public class Directory extends DataBlock {
         this.file = file;
         this.dirDataBuffer = file.getDirDataBuffer();
         this.superBlock = file.getVolume().getSuperblock();
+        this.metrics = file.getVolume().getMetrics();
+    }
+
+    /**
+     * Constructor to initialise a directory from the iNode of the directory, used to look up names in the directory.
+     * @param vol The volume the directory is located in.
+     * @param dirINode The iNode of the directory.
+     */
+    public Directory(Volume vol, INode dirINode) {
+        super(vol);
+        this.dirINode = dirINode;
+        this.superBlock = vol.getSuperblock();
+        this.metrics = vol.getMetrics();
+    }
+
+    /**
+     * Finds the iNode number for a name in this directory. The name is encoded as UTF-8 to compare with the names on disk.
+     * Only the names of entries are compared - no iNodes are read and no listing rows are built.
+     * Directories with a hashed index on disk are searched through it, reading only the blocks on the path to the name.
+     * Other directories with more entries than the volume's threshold are indexed in memory on the first lookup,
+     * and the index is kept with the directory's iNode for later lookups.
+     *
+     * @param name The name to search for.
+     * @return The iNode number of the entry with the given name, or 0 if there is no such entry.
+     */
+    public int lookup(String name) {
+
+        if (this.metrics == null)
+            return this.lookup(name.getBytes(StandardCharsets.UTF_8));
+
+        long startTime = System.nanoTime();
+        int iNodeNumber = this.lookup(name.getBytes(StandardCharsets.UTF_8));
+        this.metrics.recordDirectoryLookup(System.nanoTime() - startTime);
+        return iNodeNumber;
+    }
+
+    /**
+     * Finds the iNode number for the bytes of a name in this directory.
+     * @param nameBytes The bytes of the name to search for.
+     * @return The iNode number of the entry with the given name, or 0 if there is no such entry.
+     */
+    private int lookup(byte[] nameBytes) {
+
+        if (this.dirINode != null) {
+
+            // Use the hashed index on disk, unless it can't be read
+            if (this.dirINode.isHashIndexed() && this.superBlock.hasDirIndex()) {
+
+                // As in Linux, "." and ".." are only searched for in the first block, which the index doesn't map
+                if (isDotOrDotDot(nameBytes)) {
+                    int blockSize = this.superBlock.getBlockSize();
+                    return this.searchEntries(this.readDirBlock(0, blockSize).array(), nameBytes);
+                }
+
+                int iNodeNumber = this.hashTreeLookup(nameBytes);
+                if (iNodeNumber >= 0)
+                    return iNodeNumber;
+            }
+
+            // Otherwise use the index in memory, building it if needed
+            DirectoryIndex index = this.dirINode.getDirectoryIndex();
+            if (index == null) {
+                index = DirectoryIndex.build(this.dirINode, this.getDirData(), this.getVolume().getDirectoryIndexThreshold());
+                this.dirINode.setDirectoryIndex(index);
+            }
+            if (index.isIndexed())
+                return index.lookup(nameBytes);
+        }
+
+        // Otherwise compare the bytes of each name until the first match
+        return this.searchEntries(this.getDirData(), nameBytes);
+    }
+
+    /**
+     * Returns true if the bytes of a name are "." or "..".
+     * @param name The bytes of the name.
+     * @return True for "." or "..", false otherwise.
+     */
+    private static boolean isDotOrDotDot(byte[] name) {
+        return (name.length == 1 && name[0] == '.') || (name.length == 2 && name[0] == '.' && name[1] == '.');
+    }
+
+    /**
+     * Searches the hashed index on disk for a name.
+     * The index entries at each level are binary searched for the hash of the name, and then the one leaf block
+     * the hash maps to is searched linearly. Leaf blocks following it are searched while their hashes collide.
+     *
+     * @param name The bytes of the name to search for.
+     * @return The iNode number of the entry with the given name, 0 if there is no such entry, or -1 if the index can't be used.
+     */
+    private int hashTreeLookup(byte[] name) {
+
+        int blockSize = this.superBlock.getBlockSize();
+        long numBlocks = (this.dirINode.getTotalFileSize() + blockSize - 1) / blockSize;
+
+        ByteBuffer rootBuffer = this.readDirBlock(0, blockSize);
+        int hashVersion = rootBuffer.get(DX_HASH_VERSION_OFFSET) & 0xFF;
+        int infoLength = rootBuffer.get(DX_INFO_LENGTH_OFFSET) & 0xFF;
+        int levels = rootBuffer.get(DX_LEVELS_OFFSET) & 0xFF;
+        if (hashVersion > DirectoryHash.TEA || levels >= DX_MAX_LEVELS)
+            return -1;
+        if ((this.superBlock.getFlags() & SuperBlock.FLAG_UNSIGNED_HASH) != 0)
+            hashVersion += DirectoryHash.LEGACY_UNSIGNED;
+
+        int hash = DirectoryHash.hash(name, hashVersion, this.superBlock.getHashSeed());
+
+        // The index node, offset of its entries, number of entries and current entry at each level
+        ByteBuffer[] nodes = new ByteBuffer[levels + 1];
+        int[] entriesOffsets = new int[levels + 1];
+        int[] counts = new int[levels + 1];
+        int[] entries = new int[levels + 1];
+
+        // Descend through the index nodes to the entry for the hash
+        nodes[0] = rootBuffer;
+        entriesOffsets[0] = DX_ROOT_INFO_OFFSET + infoLength;
+        for (int level = 0; level <= levels; level++) {
+
+            ByteBuffer node = nodes[level];
+            int entriesOffset = entriesOffsets[level];
+            int limit = node.getShort(entriesOffset) & 0xFFFF;
+            int count = node.getShort(entriesOffset + 2) & 0xFFFF;
+            if (count == 0 || count > limit || entriesOffset + limit * DX_ENTRY_LENGTH > blockSize)
+                return -1;
+            counts[level] = count;
+
+            // Find the last entry with a hash no greater than the name's - the first entry has no hash
+            int low = 1, high = count - 1;
+            int entry = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (Integer.compareUnsigned(node.getInt(entriesOffset + mid * DX_ENTRY_LENGTH), hash) <= 0) {
+                    entry = mid;
+                    low = mid + 1;
+                }
+                else
+                    high = mid - 1;
+            }
+            entries[level] = entry;
+
+            if (level < levels) {
+                long block = node.getInt(entriesOffset + entry * DX_ENTRY_LENGTH + 4) & 0xFFFFFFFFL;
+                if (block >= numBlocks)
+                    return -1;
+                nodes[level + 1] = this.readDirBlock(block, blockSize);
+                entriesOffsets[level + 1] = DX_NODE_ENTRIES_OFFSET;
+            }
+        }
+
+        // Search the leaf block, and any following leaf blocks continuing a run of colliding hashes
+        byte[] leaf = new byte[blockSize];
+        while (true) {
+            long block = nodes[levels].getInt(entriesOffsets[levels] + entries[levels] * DX_ENTRY_LENGTH + 4) & 0xFFFFFFFFL;
+            if (block >= numBlocks)
+                return -1;
+            this.dirINode.read(block * blockSize, leaf, 0, blockSize);
+
+            int iNodeNumber = this.searchEntries(leaf, name);
+            if (iNodeNumber != 0)
+                return iNodeNumber;
+
+            // Move to the next entry, going up through the levels at the end of each node
+            int level = levels;
+            while (level >= 0 && ++entries[level] == counts[level])
+                level--;
+            if (level < 0)
+                return 0;
+            int nextHash = nodes[level].getInt(entriesOffsets[level] + entries[level] * DX_ENTRY_LENGTH);
+            if ((nextHash & ~1) != hash)
+                return 0;
+
+            // Go back down to the first entry of each node below
+            for (; level < levels; level++) {
+                long child = nodes[level].getInt(entriesOffsets[level] + entries[level] * DX_ENTRY_LENGTH + 4) & 0xFFFFFFFFL;
+                if (child >= numBlocks)
+                    return -1;
+                nodes[level + 1] = this.readDirBlock(child, blockSize);
+                counts[level + 1] = nodes[level + 1].getShort(DX_NODE_ENTRIES_OFFSET + 2) & 0xFFFF;
+                entries[level + 1] = 0;
+                if (counts[level + 1] == 0)
+                    return -1;
+            }
+        }
+    }
+
+    /**
+     * Reads one block of this directory.
+     * @param block The logical block number in the directory.
+     * @param blockSize The size of each block.
+     * @return The buffer of bytes in the block.
+     */
+    private ByteBuffer readDirBlock(long block, int blockSize) {
+        ByteBuffer blockBuffer = ByteBuffer.wrap(new byte[blockSize]);
+        blockBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.dirINode.read(block * blockSize, blockBuffer.array(), 0, blockSize);
+        return blockBuffer;
+    }
+
+    /**
+     * Searches directory entries for a name, stopping at the first match.
+     * Names are compared as raw bytes, so no names are decoded.
+     *
+     * @param block The bytes of the directory entries.
+     * @param name The bytes of the name to search for.
+     * @return The iNode number of the entry with the given name, or 0 if there is no such entry.
+     */
+    private int searchEntries(byte[] block, byte[] name) {
+
+        ByteBuffer blockBuffer = ByteBuffer.wrap(block);
+        blockBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int offset = 0;
+        int numScanned = 0;
+        int found = 0;
+        while (offset + FILENAME_OFFSET <= block.length) {
+            int iNodeNumber = blockBuffer.getInt(offset);
+            int recordLength = blockBuffer.getShort(offset + INODE_LENGTH) & 0xFFFF;
+            int nameLength = blockBuffer.get(offset + NAME_LEN_OFFSET) & 0xFF;
+            numScanned++;
+
+            if (iNodeNumber != 0 && nameLength == name.length && offset + FILENAME_OFFSET + nameLength <= block.length
+                    && Arrays.equals(block, offset + FILENAME_OFFSET, offset + FILENAME_OFFSET + nameLength, name, 0, name.length)) {
+                found = iNodeNumber;
+                break;
+            }
+
+            // Stop at a corrupt entry rather than looping forever
+            if (recordLength == 0)
+                break;
+            offset += recordLength;
+        }
+
+        if (this.metrics != null)
+            this.metrics.recordDirectoryEntries(numScanned);
+        return found;
+    }
+
+    /**
+     * Returns the bytes of this directory, reading them the first time they are needed.
+     * @return The buffer of bytes in this directory.
+     */
+    private ByteBuffer getDirDataBuffer() {
+        if (this.dirDataBuffer == null) {
+            this.dirDataBuffer = ByteBuffer.wrap(this.dirINode.getDataBlocksFromPointers());
+            this.dirDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return this.dirDataBuffer;
+    }
+
+    /**
+     * Returns the bytes of this directory as an array.
+     * @return The bytes in this directory.
+     */
+    private byte[] getDirData() {
+        return this.getDirDataBuffer().array();
+    }
+
+    /**
+     * Returns an iterator over the entries in use in this directory, in the order they are stored.
+     * Directories opened from an iNode are read one block at a time as the iterator advances.
+     * No iNodes are read and no names are decoded.
+     *
+     * @return The iterator of directory entries.
+     */
+    @Override
+    public Iterator<DirectoryEntry> iterator() {
+        return new EntryIterator();
     }
 
     /**
@@ -51,76 +330,189 @@ public class Directory extends DataBlock {
         // Create dynamic list of strings to store individual 'row' strings
         List<String> directoryStrings = new ArrayList<String>();
 
-        int currentLength = 0;
-        while (currentLength < dirDataBuffer.limit()) {
+        // Add a 'row' for each entry
+        for (DirectoryEntry entry : this)
+            directoryStrings.add(this.getDirRowAsString(entry));
+        return directoryStrings;
+    }
 
-            // Add next 'row' to directory string
-            directoryStrings.add(this.getDirRowAsString(currentLength));
+    /**
+     * Method to retrieve the names of all entries in this directory, as listed by ls without -l.
+     * Only the directory's own blocks are read - no iNodes are read.
+     *
+     * @return A dynamic list of names.
+     */
+    public List<String> getFileNames() {
 
-            // Add length to find next entry 'row'
-            currentLength += dirDataBuffer.getShort(currentLength + INODE_LENGTH);
-        }
-        return directoryStrings;
+        List<String> names = new ArrayList<String>();
+        for (DirectoryEntry entry : this)
+            names.add(entry.getName());
+        return names;
     }
 
     /**
      * Method which returns a String containing a full, single line in a directory listing.
      *
      * @param offset The current offset in the directory listing (see getFileInfo())
-     * @return The directory 'row' as a string.
+     * @return The directory 'row' as a string, or an error row if there is no valid record at the offset.
      */
     public String getDirRowAsString(int offset) {
+        byte[] dirData = this.getDirData();
+        DirectoryEntry entry = this.readEntry(dirData, offset, dirData.length);
+        if (entry == null || !this.isValidINodeNumber(entry.getINodeNumber()))
+            return "error - corrupted file!\n";
+        return this.getDirRowAsString(entry);
+    }
+
+    /**
+     * Method which returns a String containing a full, single line in a directory listing for an entry.
+     *
+     * @param entry The directory entry.
+     * @return The directory 'row' as a string.
+     */
+    public String getDirRowAsString(DirectoryEntry entry) {
 
         // Obtain iNode information at current row
-        INode currentINode = this.getINodeFromRow(offset);
+        INode currentINode = this.getVolume().getINode(entry.getINodeNumber());
 
         // Obtain user ID (root etc.)
         String users = "";
         users += (currentINode.getUserID() == 0) ? "root  " : Integer.toString(currentINode.getUserID()) + "  ";   // User ID of owner
         users += (currentINode.getGroupID() == 0) ? "root" : Integer.toString(currentINode.getGroupID());          // Group ID of owner
 
-        // Obtain file name given the filename length
-        byte[] fileNameBytes = new byte[dirDataBuffer.get(offset + NAME_LEN_OFFSET)];
-        for (int i = 0; i < fileNameBytes.length; i++)
-            fileNameBytes[i] = dirDataBuffer.get(i + offset + FILENAME_OFFSET);
-        String filenameStr = new String(fileNameBytes);
-
-        // Find the file you're supposed to search for in the current directory listing
-        if (filenameStr.equals(file.getNextDirectoryString()))
-            this.nextINode = currentINode;
-
         String rowString = currentINode.getFileModeAsString() + " " + String.format("%2s", Integer.toString(currentINode.getNumHardLinks())) + "  " + users + "  "; 
 
         // Check for corruption
         if (currentINode.getTotalFileSize() < 0)
             rowString = "error - corrupted file!\n";
         else
-            rowString += String.format("%12s", Long.toString(currentINode.getTotalFileSize())) + "  " + currentINode.getLastModifiedTime() + "  " + filenameStr + "\n"; 
+            rowString += String.format("%12s", Long.toString(currentINode.getTotalFileSize())) + "  " + currentINode.getLastModifiedTime() + "  " + entry.getName() + "\n"; 
 
         // Unix-style directory listing for a given iNode
         return rowString;
     }
 
+    /**
+     * Reads the directory record at the given offset in an array of directory bytes.
+     * With the filetype feature the name length is one byte followed by the file type, otherwise it is two bytes.
+     *
+     * @param bytes The array of directory bytes.
+     * @param offset The offset of the record in the array.
+     * @param end The offset in the array the records end at.
+     * @return The entry, or null if the record is corrupt.
+     */
+    private DirectoryEntry readEntry(byte[] bytes, int offset, int end) {
+
+        if (offset + FILENAME_OFFSET > end)
+            return null;
+
+        int iNodeNumber = (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+        int recordLength = (bytes[offset + INODE_LENGTH] & 0xFF) | (bytes[offset + INODE_LENGTH + 1] & 0xFF) << 8;
+
+        int nameLength, fileType;
+        if (this.superBlock.hasFileType()) {
+            nameLength = bytes[offset + NAME_LEN_OFFSET] & 0xFF;
+            fileType = bytes[offset + FILE_TYPE_OFFSET] & 0xFF;
+        }
+        else {
+            nameLength = (bytes[offset + NAME_LEN_OFFSET] & 0xFF) | (bytes[offset + NAME_LEN_OFFSET + 1] & 0xFF) << 8;
+            fileType = DirectoryEntry.TYPE_UNKNOWN;
+        }
+
+        if (recordLength < FILENAME_OFFSET || offset + recordLength > end || FILENAME_OFFSET + nameLength > recordLength)
+            return null;
+        return new DirectoryEntry(iNodeNumber, recordLength, fileType, bytes, offset + FILENAME_OFFSET, nameLength);
+    }
+
+    /**
+     * Name: EntryIterator
+     *
+     * Iterates over the entries in use in this directory, skipping unused records.
+     * Directories with their bytes already read are iterated as one chunk, otherwise each block is read in turn.
+     * A corrupt record ends the chunk it is in.
+     */
+    private class EntryIterator implements Iterator<DirectoryEntry> {
+
+        private byte[] chunk;           /* The bytes currently being iterated over */
+        private int offset;             /* The offset of the next record in the chunk */
+        private long nextBlock;         /* The next block of the directory to read */
+        private long numBlocks;         /* The number of blocks in the directory, or 0 if it is iterated as one chunk */
+        private DirectoryEntry next;    /* The next entry to return, or null if it hasn't been found yet */
+
+        /**
+         * Constructor to start iterating from the first record.
+         */
+        private EntryIterator() {
+            if (dirDataBuffer != null || dirINode == null)
+                this.chunk = getDirData();
+            else {
+                int blockSize = superBlock.getBlockSize();
+                this.numBlocks = (dirINode.getTotalFileSize() + blockSize - 1) / blockSize;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            while (this.next == null) {
+
+                // Read the next block once the current chunk is finished
+                if (this.chunk == null || this.offset >= this.chunk.length) {
+                    if (this.nextBlock >= this.numBlocks)
+                        return false;
+                    int blockSize = superBlock.getBlockSize();
+                    this.chunk = new byte[blockSize];
+                    dirINode.read(this.nextBlock++ * blockSize, this.chunk, 0, blockSize);
+                    this.offset = 0;
+                }
+
+                DirectoryEntry entry = readEntry(this.chunk, this.offset, this.chunk.length);
+                if (entry == null) {
+                    this.offset = this.chunk.length;
+                    continue;
+                }
+                if (metrics != null)
+                    metrics.recordDirectoryEntries(1);
+                this.offset += entry.getRecordLength();
+                if (entry.getINodeNumber() != 0)
+                    this.next = entry;
+            }
+            return true;
+        }
+
+        @Override
+        public DirectoryEntry next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            DirectoryEntry entry = this.next;
+            this.next = null;
+            return entry;
+        }
+    }
+
     /**
      * Method which returns the iNode of a file for a particular 'row' in the directory listing.
      *
      * @param offset The current offset of the 'row' in the listing (see getDirRowAsString())
-     * @return The iNode of the file in this 'row'.
+     * @return The iNode of the file in this 'row', or null if there is no valid record at the offset
+     *         or its iNode number is outside the volume's iNode tables.
      */
     public INode getINodeFromRow(int offset) {
 
-        int iNodeNumber = dirDataBuffer.getInt(offset);
-
-        int tablePointerIndex = this.getVolume().getTablePointerForiNode(iNodeNumber, this.superBlock.getiNodesPerGroup(), this.superBlock.getTotaliNodes());
+        byte[] dirData = this.getDirData();
+        DirectoryEntry entry = this.readEntry(dirData, offset, dirData.length);
+        if (entry == null || !this.isValidINodeNumber(entry.getINodeNumber()))
+            return null;
 
-        return (new INode(iNodeNumber, this.getVolume().getiNodeTablePointers()[tablePointerIndex], tablePointerIndex, this.superBlock));
+        return this.getVolume().getINode(entry.getINodeNumber());
     }
 
     /**
-     * Returns the iNode of the next file to search for when traversing the file system.
-     * @return The iNode instance for the next file to find.
+     * Returns true if an iNode number read from a directory record refers to an iNode in the volume's iNode tables.
+     * @param iNodeNumber The iNode number.
+     * @return True if the number is from 1 to the total number of iNodes.
      */
-    public INode getNextINode() {
-        return this.nextINode;
+    private boolean isValidINodeNumber(int iNodeNumber) {
+        return iNodeNumber != 0 && Integer.compareUnsigned(iNodeNumber, this.superBlock.getTotaliNodes()) <= 0;
     }
 }
\ No newline at end of file
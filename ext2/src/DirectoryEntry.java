@@ -0,0 +1,136 @@
+package ext2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Name: DirectoryEntry
+ *
+ * This class represents a single record in a directory: the iNode number, record length, file type and name of an entry.
+ * The name is kept as a slice of the bytes the record was read from and is only decoded to a String when asked for,
+ * so entries can be listed and compared without decoding names or reading any iNodes.
+ * The file type is only known if the file system has the filetype feature, otherwise it is TYPE_UNKNOWN.
+ *
+ * @author Harry Baines
+ * @see Directory
+ */
+public class DirectoryEntry {
+
+    /* FILE TYPE CONSTANTS */
+    public static final int TYPE_UNKNOWN  = 0;      /* The file type isn't stored in the entry */
+    public static final int TYPE_FILE     = 1;      /* Regular file */
+    public static final int TYPE_DIR      = 2;      /* Directory */
+    public static final int TYPE_CHRDEV   = 3;      /* Character device */
+    public static final int TYPE_BLKDEV   = 4;      /* Block device */
+    public static final int TYPE_FIFO     = 5;      /* Named pipe */
+    public static final int TYPE_SOCKET   = 6;      /* Socket */
+    public static final int TYPE_SYMLINK  = 7;      /* Symbolic link */
+
+    private final int iNodeNumber;                  /* The iNode number the entry refers to */
+    private final int recordLength;                 /* The length of the record, in bytes */
+    private final int fileType;                     /* The file type of the entry */
+    private final byte[] bytes;                     /* The array the name is stored in */
+    private final int nameOffset;                   /* The offset of the name in the array */
+    private final int nameLength;                   /* The length of the name, in bytes */
+    private String name;                            /* The decoded name, set on first use */
+
+    /**
+     * Constructor to initialise a directory entry from the fields of a record.
+     *
+     * @param iNodeNumber The iNode number the entry refers to.
+     * @param recordLength The length of the record, in bytes.
+     * @param fileType The file type of the entry.
+     * @param bytes The array the name is stored in - the name isn't copied.
+     * @param nameOffset The offset of the name in the array.
+     * @param nameLength The length of the name, in bytes.
+     */
+    public DirectoryEntry(int iNodeNumber, int recordLength, int fileType, byte[] bytes, int nameOffset, int nameLength) {
+        this.iNodeNumber = iNodeNumber;
+        this.recordLength = recordLength;
+        this.fileType = fileType;
+        this.bytes = bytes;
+        this.nameOffset = nameOffset;
+        this.nameLength = nameLength;
+    }
+
+    /**
+     * Obtains the name of the entry, decoding it as UTF-8 the first time it is needed.
+     * @return The name as a String.
+     */
+    public String getName() {
+        if (this.name == null)
+            this.name = new String(this.bytes, this.nameOffset, this.nameLength, StandardCharsets.UTF_8);
+        return this.name;
+    }
+
+    /**
+     * Obtains a copy of the bytes of the name.
+     * @return The bytes of the name.
+     */
+    public byte[] getNameBytes() {
+        return Arrays.copyOfRange(this.bytes, this.nameOffset, this.nameOffset + this.nameLength);
+    }
+
+    /**
+     * Compares the name of the entry with the bytes of a name, without decoding either.
+     * @param name The bytes of the name to compare with.
+     * @return True if the names are equal.
+     */
+    public boolean nameEquals(byte[] name) {
+        return Arrays.equals(this.bytes, this.nameOffset, this.nameOffset + this.nameLength, name, 0, name.length);
+    }
+
+    /**
+     * Returns true if this is the "." or ".." entry of a directory.
+     * @return True for "." or "..", false otherwise.
+     */
+    public boolean isDotOrDotDot() {
+        return this.nameLength > 0 && this.bytes[this.nameOffset] == '.'
+            && (this.nameLength == 1 || (this.nameLength == 2 && this.bytes[this.nameOffset + 1] == '.'));
+    }
+
+    /**
+     * Returns true if the entry is known to be a directory from its file type.
+     * @return True for a directory, false otherwise or if the file type is unknown.
+     */
+    public boolean isDirectory() {
+        return this.fileType == TYPE_DIR;
+    }
+
+    /**
+     * Obtains the iNode number the entry refers to.
+     * @return The iNode number.
+     */
+    public int getINodeNumber() {
+        return this.iNodeNumber;
+    }
+
+    /**
+     * Obtains the length of the record, in bytes.
+     * @return The record length.
+     */
+    public int getRecordLength() {
+        return this.recordLength;
+    }
+
+    /**
+     * Obtains the file type of the entry (see the TYPE constants in this class).
+     * @return The file type.
+     */
+    public int getFileType() {
+        return this.fileType;
+    }
+
+    /**
+     * Obtains the length of the name, in bytes.
+     * @return The name length.
+     */
+    public int getNameLength() {
+        return this.nameLength;
+    }
+
+    @Override
+    public String toString() {
+        return this.getName();
+    }
+}
@@ -0,0 +1,208 @@
+package ext2;
+
+/**
+ * Name: DirectoryHash
+ *
+ * This class computes the hash of a file name used to index entries in hashed (dir_index) directories.
+ * The legacy, half MD4 and TEA hash functions are supported, each in the signed and unsigned character variants,
+ * following the ext2/3/4 on-disk format.
+ *
+ * @author Harry Baines
+ * @see Directory
+ */
+public class DirectoryHash {
+
+    public static final int LEGACY          = 0;    /* Legacy hash version */
+    public static final int HALF_MD4        = 1;    /* Half MD4 hash version */
+    public static final int TEA             = 2;    /* TEA hash version */
+    public static final int LEGACY_UNSIGNED = 3;    /* Legacy hash version using unsigned characters */
+    public static final int HALF_MD4_UNSIGNED = 4;  /* Half MD4 hash version using unsigned characters */
+    public static final int TEA_UNSIGNED    = 5;    /* TEA hash version using unsigned characters */
+
+    public static final int[] DEFAULT_SEED = { 0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476 };  /* Seed used when the super block has none */
+    public static final int HTREE_EOF       = 0x7fffffff;   /* Reserved hash value marking the end of a directory */
+
+    private static final int K2 = 013240474631;     /* Half MD4 round 2 constant */
+    private static final int K3 = 015666365641;     /* Half MD4 round 3 constant */
+    private static final int TEA_DELTA = 0x9E3779B9; /* TEA key schedule constant */
+
+    /**
+     * Computes the major hash of a file name.
+     *
+     * @param name The bytes of the file name.
+     * @param version The hash version (see the constants in this class).
+     * @param seed The four word hash seed from the super block, or all 0s to use the default seed.
+     * @throws IllegalArgumentException if the hash version isn't supported.
+     * @return The major hash, with the lowest bit clear.
+     */
+    public static int hash(byte[] name, int version, int[] seed) {
+
+        int[] buf = DEFAULT_SEED.clone();
+        if (seed != null && (seed[0] | seed[1] | seed[2] | seed[3]) != 0)
+            buf = seed.clone();
+
+        boolean unsigned = version >= LEGACY_UNSIGNED;
+        int hash;
+        switch (version) {
+            case LEGACY:
+            case LEGACY_UNSIGNED:
+                hash = DirectoryHash.legacyHash(name, unsigned);
+                break;
+
+            case HALF_MD4:
+            case HALF_MD4_UNSIGNED:
+                int[] md4In = new int[8];
+                for (int p = 0; p < name.length; p += 32) {
+                    DirectoryHash.toHashBuffer(name, p, name.length - p, md4In, 8, unsigned);
+                    DirectoryHash.halfMD4Transform(buf, md4In);
+                }
+                hash = buf[1];
+                break;
+
+            case TEA:
+            case TEA_UNSIGNED:
+                int[] teaIn = new int[4];
+                for (int p = 0; p < name.length; p += 16) {
+                    DirectoryHash.toHashBuffer(name, p, name.length - p, teaIn, 4, unsigned);
+                    DirectoryHash.teaTransform(buf, teaIn);
+                }
+                hash = buf[0];
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported directory hash version: " + version);
+        }
+
+        hash &= ~1;
+        if (hash == (HTREE_EOF << 1))
+            hash = (HTREE_EOF - 1) << 1;
+        return hash;
+    }
+
+    /**
+     * The legacy hash function.
+     * @param name The bytes of the file name.
+     * @param unsigned True to treat each character as unsigned.
+     * @return The hash.
+     */
+    private static int legacyHash(byte[] name, boolean unsigned) {
+        int hash0 = 0x12a3fe2d;
+        int hash1 = 0x37abe8f9;
+        for (byte b : name) {
+            int c = unsigned ? (b & 0xFF) : b;
+            int hash = hash1 + (hash0 ^ (c * 7152373));
+            if ((hash & 0x80000000) != 0)
+                hash -= 0x7fffffff;
+            hash1 = hash0;
+            hash0 = hash;
+        }
+        return hash0 << 1;
+    }
+
+    /**
+     * Packs up to num words of a file name into a buffer of words, padding with a value derived from the length.
+     *
+     * @param name The bytes of the file name.
+     * @param offset The offset of the first byte to pack.
+     * @param length The number of bytes remaining in the name from the offset.
+     * @param buf The buffer of words to fill.
+     * @param num The number of words to fill.
+     * @param unsigned True to treat each character as unsigned.
+     */
+    private static void toHashBuffer(byte[] name, int offset, int length, int[] buf, int num, boolean unsigned) {
+
+        int pad = length | (length << 8);
+        pad |= pad << 16;
+
+        int val = pad;
+        int count = Math.min(Math.max(length, 0), num * 4);
+        int word = 0;
+        for (int i = 0; i < count; i++) {
+            int c = unsigned ? (name[offset + i] & 0xFF) : name[offset + i];
+            val = c + (val << 8);
+            if ((i % 4) == 3) {
+                buf[word++] = val;
+                val = pad;
+            }
+        }
+        if (word < num)
+            buf[word++] = val;
+        while (word < num)
+            buf[word++] = pad;
+    }
+
+    /**
+     * The half MD4 transform, mixing eight words of input into the four word buffer.
+     * @param buf The hash buffer.
+     * @param in The input words.
+     */
+    private static void halfMD4Transform(int[] buf, int[] in) {
+
+        int a = buf[0], b = buf[1], c = buf[2], d = buf[3];
+
+        // Round 1
+        a = Integer.rotateLeft(a + f(b, c, d) + in[0], 3);
+        d = Integer.rotateLeft(d + f(a, b, c) + in[1], 7);
+        c = Integer.rotateLeft(c + f(d, a, b) + in[2], 11);
+        b = Integer.rotateLeft(b + f(c, d, a) + in[3], 19);
+        a = Integer.rotateLeft(a + f(b, c, d) + in[4], 3);
+        d = Integer.rotateLeft(d + f(a, b, c) + in[5], 7);
+        c = Integer.rotateLeft(c + f(d, a, b) + in[6], 11);
+        b = Integer.rotateLeft(b + f(c, d, a) + in[7], 19);
+
+        // Round 2
+        a = Integer.rotateLeft(a + g(b, c, d) + in[1] + K2, 3);
+        d = Integer.rotateLeft(d + g(a, b, c) + in[3] + K2, 5);
+        c = Integer.rotateLeft(c + g(d, a, b) + in[5] + K2, 9);
+        b = Integer.rotateLeft(b + g(c, d, a) + in[7] + K2, 13);
+        a = Integer.rotateLeft(a + g(b, c, d) + in[0] + K2, 3);
+        d = Integer.rotateLeft(d + g(a, b, c) + in[2] + K2, 5);
+        c = Integer.rotateLeft(c + g(d, a, b) + in[4] + K2, 9);
+        b = Integer.rotateLeft(b + g(c, d, a) + in[6] + K2, 13);
+
+        // Round 3
+        a = Integer.rotateLeft(a + h(b, c, d) + in[3] + K3, 3);
+        d = Integer.rotateLeft(d + h(a, b, c) + in[7] + K3, 9);
+        c = Integer.rotateLeft(c + h(d, a, b) + in[2] + K3, 11);
+        b = Integer.rotateLeft(b + h(c, d, a) + in[6] + K3, 15);
+        a = Integer.rotateLeft(a + h(b, c, d) + in[1] + K3, 3);
+        d = Integer.rotateLeft(d + h(a, b, c) + in[5] + K3, 9);
+        c = Integer.rotateLeft(c + h(d, a, b) + in[0] + K3, 11);
+        b = Integer.rotateLeft(b + h(c, d, a) + in[4] + K3, 15);
+
+        buf[0] += a;
+        buf[1] += b;
+        buf[2] += c;
+        buf[3] += d;
+    }
+
+    private static int f(int x, int y, int z) {
+        return z ^ (x & (y ^ z));
+    }
+
+    private static int g(int x, int y, int z) {
+        return (x & y) + ((x ^ y) & z);
+    }
+
+    private static int h(int x, int y, int z) {
+        return x ^ y ^ z;
+    }
+
+    /**
+     * The TEA transform, mixing four words of input into the first two words of the buffer.
+     * @param buf The hash buffer.
+     * @param in The input words.
+     */
+    private static void teaTransform(int[] buf, int[] in) {
+        int sum = 0;
+        int b0 = buf[0], b1 = buf[1];
+        int a = in[0], b = in[1], c = in[2], d = in[3];
+        for (int n = 0; n < 16; n++) {
+            sum += TEA_DELTA;
+            b0 += ((b1 << 4) + a) ^ (b1 + sum) ^ ((b1 >>> 5) + b);
+            b1 += ((b0 << 4) + c) ^ (b0 + sum) ^ ((b0 >>> 5) + d);
+        }
+        buf[0] += b0;
+        buf[1] += b1;
+    }
+}
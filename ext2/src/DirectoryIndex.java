@@ -0,0 +1,168 @@
+package ext2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Name: DirectoryIndex
+ *
+ * This class is an in-memory hash index of the names in a directory, used for large directories without a hashed index on disk.
+ * The index keeps only a sorted array of the hash and offset of each entry, 8 bytes per entry, rather than the bytes of the directory,
+ * so indexes kept on cached iNodes stay small however long the names are. A lookup binary searches for the hash of the name
+ * and reads the record at each offset with that hash from the directory to compare the name.
+ * Directories with too few entries to be worth indexing share the UNINDEXED instance, recording that they are searched linearly.
+ *
+ * @author Harry Baines
+ * @see Directory
+ */
+public class DirectoryIndex {
+
+    public static final DirectoryIndex UNINDEXED = new DirectoryIndex();   /* Marks a directory that is searched linearly */
+
+    private final INode dirINode;               /* The iNode of the directory, which records are read through */
+    private final long[] keys;                  /* The hash of each entry's name in the high 32 bits and its offset in the low 32 bits, sorted */
+
+    /**
+     * Constructor for the UNINDEXED instance.
+     */
+    private DirectoryIndex() {
+        this.dirINode = null;
+        this.keys = null;
+    }
+
+    /**
+     * Constructor to index every entry in use in a directory.
+     * @param dirINode The iNode of the directory.
+     * @param dirData The bytes of the directory, which aren't kept.
+     * @param numEntries The number of entries in use in the directory.
+     */
+    private DirectoryIndex(INode dirINode, byte[] dirData, int numEntries) {
+
+        ByteBuffer dirDataBuffer = ByteBuffer.wrap(dirData);
+        dirDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.dirINode = dirINode;
+        this.keys = new long[numEntries];
+
+        int numKeys = 0;
+        int offset = 0;
+        while (offset < dirData.length && numKeys < numEntries) {
+            int iNodeNumber = dirDataBuffer.getInt(offset);
+            int recordLength = dirDataBuffer.getShort(offset + Directory.INODE_LENGTH) & 0xFFFF;
+
+            if (iNodeNumber != 0) {
+                int nameLength = dirDataBuffer.get(offset + Directory.NAME_LEN_OFFSET) & 0xFF;
+                int hash = hash(dirData, offset + Directory.FILENAME_OFFSET, nameLength);
+                this.keys[numKeys++] = key(hash, offset);
+            }
+
+            if (recordLength == 0)
+                break;
+            offset += recordLength;
+        }
+
+        // Entries with the same hash stay in directory order, so the first entry with a name is found, as in a linear search
+        Arrays.sort(this.keys);
+    }
+
+    /**
+     * Builds the index for a directory, if it has more entries than the given threshold.
+     *
+     * @param dirINode The iNode of the directory.
+     * @param dirData The bytes of the directory.
+     * @param threshold The number of entries above which the directory is indexed.
+     * @return The index, or UNINDEXED if the directory has too few entries.
+     */
+    public static DirectoryIndex build(INode dirINode, byte[] dirData, int threshold) {
+
+        ByteBuffer dirDataBuffer = ByteBuffer.wrap(dirData);
+        dirDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Count the entries in use without decoding any names
+        int numEntries = 0;
+        int offset = 0;
+        while (offset < dirData.length) {
+            if (dirDataBuffer.getInt(offset) != 0)
+                numEntries++;
+            int recordLength = dirDataBuffer.getShort(offset + Directory.INODE_LENGTH) & 0xFFFF;
+            if (recordLength == 0)
+                break;
+            offset += recordLength;
+        }
+
+        return (numEntries > threshold) ? new DirectoryIndex(dirINode, dirData, numEntries) : UNINDEXED;
+    }
+
+    /**
+     * Finds the iNode number for a name in the directory.
+     * The record of each entry whose name has the same hash is read from the directory until the name matches.
+     *
+     * @param name The bytes of the name to search for.
+     * @return The iNode number of the entry with the given name, or 0 if there is no such entry.
+     */
+    public int lookup(byte[] name) {
+
+        int hash = hash(name, 0, name.length);
+
+        // Find the first key with the hash - offsets are never negative, so it is at or after the key with offset 0
+        int index = Arrays.binarySearch(this.keys, key(hash, 0));
+        if (index < 0)
+            index = -index - 1;
+
+        byte[] record = new byte[Directory.FILENAME_OFFSET + name.length];
+        ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+        recordBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (; index < this.keys.length && (int) (this.keys[index] >> 32) == hash; index++) {
+            int offset = (int) this.keys[index];
+            if (this.dirINode.read(offset, record, 0, record.length) < record.length)
+                continue;
+            if ((record[Directory.NAME_LEN_OFFSET] & 0xFF) == name.length
+                    && Arrays.equals(record, Directory.FILENAME_OFFSET, record.length, name, 0, name.length))
+                return recordBuffer.getInt(0);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if this index can be used for lookups, false if the directory should be searched linearly.
+     * @return True if the directory is indexed.
+     */
+    public boolean isIndexed() {
+        return this.keys != null;
+    }
+
+    /**
+     * Obtains the number of entries in the index.
+     * @return The number of entries.
+     */
+    public int getNumEntries() {
+        return (this.keys == null) ? 0 : this.keys.length;
+    }
+
+    /**
+     * Combines the hash of a name and the offset of its entry into a key, ordered by hash and then by offset.
+     *
+     * @param hash The hash of the name.
+     * @param offset The offset of the entry in the directory.
+     * @return The key.
+     */
+    private static long key(int hash, int offset) {
+        return ((long) hash << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Hashes the bytes of a name.
+     *
+     * @param bytes The array containing the name.
+     * @param offset The offset of the name in the array.
+     * @param length The length of the name.
+     * @return The hash.
+     */
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++)
+            hash = 31 * hash + bytes[i];
+        return (int) BlockCache.mix(hash);
+    }
+}
@@ -8,11 +8,14 @@ package ext2;
  * The user can open these files and view their contents if they are regular files.
  * Also, the user can view a directory listing for a file or a directory they choose.
  * Usage: can use: /xxx to find a file from the root, or can use: /root/xxx where xxx is a file.
+ * Run with -Dext2.metrics=true to record metrics for the volume and print them once the files have been read.
  *
  * @author Harry Baines
  */
 public class Driver {
 
+    public static final String METRICS_PROPERTY = "ext2.metrics";  /* System property set to true to record and print volume metrics */
+
     /** 
      * Constructor to initialise new files within the volume the user provides.
      */
@@ -22,6 +25,9 @@ public class Driver {
 
         // Create new volume instance for 'ext2fs' and print the super block info
         Volume vol = new Volume("volumes/ext2fs");
+        boolean printMetrics = Boolean.getBoolean(METRICS_PROPERTY);
+        if (printMetrics)
+            vol.enableMetrics();
 
         // Create new helper class for debugging
         Helper h = new Helper();
@@ -80,6 +86,8 @@ public class Driver {
         tripleEnd.printFileContents(tripleEnd.read(0L, 275));
 
         System.out.println("Time to complete: " + (System.currentTimeMillis() - startTime) + "ms\n");
+        if (printMetrics)
+            System.out.println(vol.getMetrics().getStatsString());
 
         // Create new GUI instance
         Ext2Reader e = new Ext2Reader(vol);
@@ -1,12 +1,18 @@
 package ext2;
 
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Title: Ext2File
@@ -14,25 +20,29 @@ import java.io.IOException;
  * This class represents a file within a given volume.
  * For the ext2 filesystem, this class represents a file within the filesystem.
  * This class is an extension of the DataBlock which provides further functionality for reading blocks and obtaining bytes.
+ * The file is also a read only SeekableByteChannel and can be viewed as an InputStream, both of which read incrementally
+ * into the caller's buffers, so files of any size can be streamed with a small fixed memory footprint.
+ * Files can also be opened and read asynchronously on the volume's I/O executor, so many outstanding reads don't each hold a thread.
  *
  * @author Harry Baines
  * @see DataBlock
+ * @see SeekableByteChannel
  */
-public class Ext2File extends DataBlock {
+public class Ext2File extends DataBlock implements SeekableByteChannel {
+
+    public static final int TRANSFER_BUFFER_SIZE = 64 * 1024;  /* Size of the buffer used to read into direct byte buffers */
 
     private String filePathString;      /* The full file path string to this file */
-    private Directory dir;              /* Stores a reference to the directory this file is stored in */
+    private int dirINodeNumber;         /* The iNode number of the last directory reached when opening this file */
     private long position;              /* Reference to the current position in the file (for reading) */
 
-    private ByteBuffer dirDataBuffer;   /* Buffer to store all bytes relevant to the current directory */
+    private ByteBuffer dirDataBuffer;   /* Buffer to store all bytes relevant to the current directory, read on first use */
     private SuperBlock superBlock;      /* Stores a reference to the super block for file system information */
-    private List<String> fileInfoList;  /* Dynamic array of strings to store each 'row' in a directory listing */
-
-    private String curDirString;        /* Stores the name of the current directory under consideration */
-    private int charCount;              /* Used to split the current directory string into parts */
 
     private INode iNode;                /* Stores the iNode for the file which is to be opened */
     private boolean isDirectory;        /* Boolean which checks if the file is a directory or a regular file */
+    private boolean isOpen;             /* Boolean which checks if this file is still open as a channel */
+    private byte[] transferBuffer;      /* Buffer used to read into direct byte buffers, allocated on first use */
 
     /**
      * Constructor used to represent a file in the given volume and initialise relevant instance variables.
@@ -47,14 +57,67 @@ public class Ext2File extends DataBlock {
         
         // Initialise instance variables
         this.position = 0L;
-        this.charCount = 0;
-        this.fileInfoList = new ArrayList<String>();
+        this.isOpen = true;
         this.superBlock = vol.getSuperblock();
 
         // Open this new file
         this.openFile();
     }
 
+    /**
+     * Constructor used to represent the file with the given iNode number, without resolving a path.
+     *
+     * @param vol The volume represented by the file opened.
+     * @param iNodeNumber The iNode number of the file.
+     */
+    private Ext2File(Volume vol, int iNodeNumber) {
+        super(vol);
+        this.filePathString = "<iNode " + iNodeNumber + ">";
+
+        // Initialise instance variables
+        this.position = 0L;
+        this.isOpen = true;
+        this.superBlock = vol.getSuperblock();
+
+        // Open the iNode directly, as the last name in a path would be
+        INode iNode = vol.getINode(iNodeNumber);
+        if (iNode.isDirectory()) {
+            this.dirINodeNumber = iNodeNumber;
+            this.isDirectory = true;
+        }
+        else {
+            this.dirINodeNumber = Volume.ROOT_INODE_NUMBER;
+            this.iNode = iNode;
+        }
+    }
+
+    /**
+     * Opens the file with the given iNode number, e.g. one found by a sweep of the iNode tables.
+     * No directories are read. The iNode is located by division and parsed through the volume's iNode cache.
+     * As the parent of a regular file opened this way isn't known, its directory listing is of the root directory.
+     *
+     * @param vol The volume the file is located in.
+     * @param iNodeNumber The iNode number of the file.
+     * @throws IllegalArgumentException if the iNode number is outside the volume.
+     * @return The opened file.
+     */
+    public static Ext2File openByInodeNumber(Volume vol, int iNodeNumber) {
+        if (iNodeNumber < 1 || iNodeNumber > vol.getSuperblock().getTotaliNodes())
+            throw new IllegalArgumentException("iNode number out of range: " + iNodeNumber);
+        return new Ext2File(vol, iNodeNumber);
+    }
+
+    /**
+     * Opens the file at the given path on the volume's I/O executor, without blocking the caller.
+     *
+     * @param vol The volume the file is located in.
+     * @param filePathString The path of the file to open in the volume.
+     * @return A future completed with the opened file, or completed exceptionally if the volume couldn't be read.
+     */
+    public static CompletableFuture<Ext2File> openAsync(Volume vol, String filePathString) {
+        return CompletableFuture.supplyAsync(() -> new Ext2File(vol, filePathString), vol.getIOExecutor());
+    }
+
 
     /********             /******** 
         ***** API METHODS *****
@@ -63,8 +126,8 @@ public class Ext2File extends DataBlock {
     /**
      * Method to read the file the user specified in the file string.
      * The method will read bytes from startByte up to the length they provide.
-     * An array of bytes will be returned containing all bytes in the file.
-     * If the file is sparse, a sequence of 0s will be returned alongisde the file data.
+     * An array of length bytes will be returned, padded with 0s if the end of the file is reached.
+     * Only the blocks covering the requested bytes are read. If the file is sparse, holes are returned as 0s.
      *
      * @param startByte The byte to start reading from in the file.
      * @param length The length of the file the user wishes to read in bytes.
@@ -90,28 +153,13 @@ public class Ext2File extends DataBlock {
                 throw new IndexOutOfBoundsException();
             }
 
-            // Find and read all datablocks for the file
-            byte[] dataBlocksFromPointers = this.iNode.getDataBlocksFromPointers();
-
-            // Create new dynamic buffer for bytes
-            ByteBuffer dataBuf = ByteBuffer.allocate((int) length);
-
-            // Uses length and start pos provided to obtain file bytes - adds 0s for holes
-            int count = 0;
-            while (count < length) {
-                if (count >= dataBlocksFromPointers.length)
-                    dataBuf.put((byte) 0);
-                else {
-                    byte b = dataBlocksFromPointers[count + (int) startByte];
-                    dataBuf.put(b);
-                }
-                count++;
-            }
-                            
-            // Transfer specified length of bytes into array
+            // Read only the blocks covering the requested bytes - any bytes beyond the end of the file are left as 0s
+            Metrics metrics = this.getVolume().getMetrics();
+            long startTime = (metrics != null) ? System.nanoTime() : 0;
             byteArray = new byte[(int) length];
-            dataBuf.position(0);
-            dataBuf.get(byteArray);
+            int bytesRead = this.iNode.read(startByte, byteArray, 0, (int) length);
+            if (metrics != null)
+                metrics.recordFileRead(bytesRead, System.nanoTime() - startTime);
         }
         else
             System.out.println(this.filePathString + " - couldn't read this file - either a directory or doesn't exist.");
@@ -119,28 +167,298 @@ public class Ext2File extends DataBlock {
         return byteArray;
     }
 
+    /**
+     * Reads the file in the same way as read(startByte, length) but without blocking the caller.
+     * The runs of blocks covering the requested bytes are copied as tasks on the volume's I/O executor and
+     * the returned future completes once they have all been copied. The position in the file isn't changed.
+     * Errors complete the future exceptionally rather than being printed.
+     *
+     * @param startByte The byte to start reading from in the file.
+     * @param length The length of the file the user wishes to read in bytes.
+     * @return A future completed with an array of length bytes, padded with 0s if the end of the file is reached,
+     *         or completed exceptionally with an IndexOutOfBoundsException if startByte is outside the file,
+     *         or an IOException if this file is a directory or doesn't exist.
+     */
+    public CompletableFuture<byte[]> readAsync(long startByte, long length) {
+
+        if (this.iNode == null)
+            return CompletableFuture.failedFuture(new IOException(this.filePathString + " - couldn't read this file - either a directory or doesn't exist."));
+        if (length < 0 || length > Integer.MAX_VALUE)
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Can't read " + length + " bytes into a single array."));
+        if (this.iNode.getTotalFileSize() == 0)
+            return CompletableFuture.completedFuture(new byte[0]);
+        if (startByte < 0 || startByte >= this.iNode.getTotalFileSize())
+            return CompletableFuture.failedFuture(new IndexOutOfBoundsException("Couldn't read data at position " + startByte));
+
+        Metrics metrics = this.getVolume().getMetrics();
+        long startTime = (metrics != null) ? System.nanoTime() : 0;
+        byte[] byteArray = new byte[(int) length];
+        return this.iNode.readAsync(startByte, byteArray, 0, byteArray.length, this.getVolume().getIOExecutor()).thenApply(bytesRead -> {
+            if (metrics != null)
+                metrics.recordFileRead(bytesRead, System.nanoTime() - startTime);
+            return byteArray;
+        });
+    }
+
     /**
      * Method to read the file the user specified in the file string.
      * This method is the same as the other read method in the API, however only requires a length to read.
-     * This method therefore calls the corresponding read method at the current position in the file.
+     * This method therefore calls the corresponding read method at the current position in the file,
+     * and advances the position by the number of bytes read from the file.
      *
      * @param length The length of the file the user wishes to read in bytes.
      * @throws IndexOutOfBoundsException Throw an index out of bounds exception if no data can be located.
      * @return An array of bytes relevant to the file opened.
      */
-    public byte[] read(long length) throws IndexOutOfBoundsException {
+    public synchronized byte[] read(long length) throws IndexOutOfBoundsException {
         if (this.position > this.iNode.getTotalFileSize()) {
             System.out.println("----------\nCouldn't read data at that position!\n----------");
             throw new IndexOutOfBoundsException();
         }
-        return (this.read(this.position, length));
+        byte[] byteArray = this.read(this.position, length);
+        this.position += Math.min(length, this.iNode.getTotalFileSize() - this.position);
+        return byteArray;
+    }
+
+    /**
+     * Reads bytes from the current position in the file into the given buffer, advancing the position.
+     * Bytes are read straight into heap buffers, and through a small transfer buffer into direct buffers.
+     *
+     * @param dst The buffer to read bytes into.
+     * @throws ClosedChannelException if this file has been closed.
+     * @throws IOException if this file is a directory or doesn't exist.
+     * @return The number of bytes read, or -1 if the position is at or beyond the end of the file.
+     */
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+
+        if (!this.isOpen)
+            throw new ClosedChannelException();
+        if (this.iNode == null)
+            throw new IOException(this.filePathString + " - couldn't read this file - either a directory or doesn't exist.");
+        if (this.position >= this.iNode.getTotalFileSize())
+            return -1;
+
+        Metrics metrics = this.getVolume().getMetrics();
+        long startTime = (metrics != null) ? System.nanoTime() : 0;
+
+        int bytesRead;
+        if (dst.hasArray()) {
+            bytesRead = this.iNode.read(this.position, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            dst.position(dst.position() + bytesRead);
+        }
+        else {
+            if (this.transferBuffer == null)
+                this.transferBuffer = new byte[TRANSFER_BUFFER_SIZE];
+            bytesRead = this.iNode.read(this.position, this.transferBuffer, 0, Math.min(dst.remaining(), TRANSFER_BUFFER_SIZE));
+            dst.put(this.transferBuffer, 0, bytesRead);
+        }
+        if (metrics != null)
+            metrics.recordFileRead(bytesRead, System.nanoTime() - startTime);
+
+        this.position += bytesRead;
+        return bytesRead;
+    }
+
+    /**
+     * Files can't be written to, so this always throws an exception.
+     * @param src Unused.
+     * @throws NonWritableChannelException always.
+     * @return Never returns.
+     */
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    /**
+     * Files can't be written to, so this always throws an exception.
+     * @param size Unused.
+     * @throws NonWritableChannelException always.
+     * @return Never returns.
+     */
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    /**
+     * Returns the current position in the file (see getPosition()).
+     * @throws ClosedChannelException if this file has been closed.
+     * @return The current position in the file.
+     */
+    @Override
+    public synchronized long position() throws IOException {
+        if (!this.isOpen)
+            throw new ClosedChannelException();
+        return this.position;
+    }
+
+    /**
+     * Changes the position in the file (see seek()).
+     * @param newPosition The position in the file to move to.
+     * @throws ClosedChannelException if this file has been closed.
+     * @return This file.
+     */
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        if (!this.isOpen)
+            throw new ClosedChannelException();
+        if (newPosition < 0)
+            throw new IllegalArgumentException("Position can't be negative.");
+        this.position = newPosition;
+        return this;
+    }
+
+    /**
+     * Returns the size of this file in bytes (see getSize()).
+     * @throws ClosedChannelException if this file has been closed.
+     * @return The file size.
+     */
+    @Override
+    public long size() throws IOException {
+        if (!this.isOpen)
+            throw new ClosedChannelException();
+        return this.getSize();
+    }
+
+    /**
+     * Returns true if this file is still open as a channel.
+     * @return True if open, false if closed.
+     */
+    @Override
+    public boolean isOpen() {
+        return this.isOpen;
+    }
+
+    /**
+     * Closes this file as a channel. The volume the file belongs to stays open.
+     */
+    @Override
+    public void close() {
+        this.isOpen = false;
+    }
+
+    /**
+     * Returns an input stream which reads this file from the current position.
+     * Reading from the stream advances the position of this file.
+     * @return The input stream.
+     */
+    public InputStream getInputStream() {
+        return Channels.newInputStream(this);
+    }
+
+    /**
+     * Finds the first offset at or after the given offset which is in a part of the file stored on the volume,
+     * like lseek with SEEK_DATA. Only the block map is consulted - no data is read.
+     *
+     * @param offset The offset in the file to search from.
+     * @throws IOException if this file is a directory or doesn't exist.
+     * @return The offset of the next data, or -1 if there is only a hole from the offset to the end of the file.
+     */
+    public long nextData(long offset) throws IOException {
+
+        if (this.iNode == null)
+            throw new IOException(this.filePathString + " - couldn't read this file - either a directory or doesn't exist.");
+
+        long fileSize = this.iNode.getTotalFileSize();
+        if (offset < 0 || offset >= fileSize)
+            return -1;
+
+        int blockSize = this.superBlock.getBlockSize();
+        long dataBlock = this.iNode.getBlockMap().nextDataBlock(offset / blockSize);
+        if (dataBlock < 0)
+            return -1;
+        long dataOffset = Math.max(offset, dataBlock * blockSize);
+        return (dataOffset < fileSize) ? dataOffset : -1;
+    }
+
+    /**
+     * Finds the first offset at or after the given offset which is in a hole in the file, like lseek with SEEK_HOLE.
+     * The end of the file counts as a hole. Only the block map is consulted - no data is read.
+     *
+     * @param offset The offset in the file to search from.
+     * @throws IOException if this file is a directory or doesn't exist.
+     * @return The offset of the next hole, the size of the file if there are no holes after the offset, or -1 if the offset is beyond the end of the file.
+     */
+    public long nextHole(long offset) throws IOException {
+
+        if (this.iNode == null)
+            throw new IOException(this.filePathString + " - couldn't read this file - either a directory or doesn't exist.");
+
+        long fileSize = this.iNode.getTotalFileSize();
+        if (offset < 0 || offset >= fileSize)
+            return -1;
+
+        int blockSize = this.superBlock.getBlockSize();
+        long holeBlock = this.iNode.getBlockMap().nextHoleBlock(offset / blockSize);
+        return Math.min(Math.max(offset, holeBlock * blockSize), fileSize);
+    }
+
+    /**
+     * Writes the entire contents of this file to the given channel, starting at the channel's current position.
+     * Each run of contiguous blocks in the block map is passed straight from the volume to the channel in one transfer.
+     * If the channel is seekable, holes in the file are skipped by moving the channel's position rather than
+     * writing 0s, so the copy is sparse as well. Otherwise holes are written as 0s.
+     * The position in this file is not changed.
+     *
+     * @param target The channel to write the file to.
+     * @throws IOException if this file is a directory or doesn't exist, or the file couldn't be written.
+     * @return The number of bytes of file written, including holes.
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+
+        if (this.iNode == null)
+            throw new IOException(this.filePathString + " - couldn't read this file - either a directory or doesn't exist.");
+
+        int blockSize = this.superBlock.getBlockSize();
+        long fileSize = this.iNode.getTotalFileSize();
+        BlockMap blockMap = this.iNode.getBlockMap();
+        boolean seekable = target instanceof SeekableByteChannel;
+
+        long transferred = 0;
+        for (int extent = 0; extent < blockMap.getExtentCount() && transferred < fileSize; extent++) {
+            long count = Math.min((long) blockMap.getLength(extent) * blockSize, fileSize - transferred);
+
+            if (!blockMap.isHole(extent))
+                this.getVolume().transferTo(blockMap.getPhysicalStart(extent) * blockSize, count, target);
+            else if (seekable)
+                ((SeekableByteChannel) target).position(((SeekableByteChannel) target).position() + count);
+            else
+                Ext2File.writeZeros(count, target);
+            transferred += count;
+        }
+
+        // Skipping a hole at the end of the file doesn't extend the target, so write its last byte
+        if (seekable && fileSize > 0 && blockMap.getPhysicalBlock((fileSize - 1) / blockSize) == 0) {
+            SeekableByteChannel seekableTarget = (SeekableByteChannel) target;
+            seekableTarget.position(seekableTarget.position() - 1);
+            Ext2File.writeZeros(1, seekableTarget);
+        }
+        return transferred;
+    }
+
+    /**
+     * Writes a run of 0s to the given channel, used for holes when the channel can't seek.
+     * @param count The number of 0s to write.
+     * @param target The channel to write to.
+     * @throws IOException if the 0s couldn't be written.
+     */
+    private static void writeZeros(long count, WritableByteChannel target) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+        while (count > 0) {
+            zeros.clear();
+            zeros.limit((int) Math.min(count, zeros.capacity()));
+            count -= zeros.remaining();
+            BlockDevice.writeFully(zeros, target);
+        }
     }
 
     /**
      * Method to allow the user to change the position in the file (for reading). 
      * @param position The position in the file the user wishes to move to.
      */
-    public void seek(long position) {
+    public synchronized void seek(long position) {
         this.position = position;
     }
 
@@ -151,7 +469,7 @@ public class Ext2File extends DataBlock {
      *
      * @return The current position in the file.
      */
-    public long getPosition() {
+    public synchronized long getPosition() {
         return this.position;
     }
 
@@ -207,40 +525,20 @@ public class Ext2File extends DataBlock {
 
     /** 
      * Method which attempts to open a file specified by the user in the fileString.
-     * If successful, the user will be notified the file was successfully opened.
+     * The path is resolved by Volume.resolve(), one name at a time from the root directory through the volume's dentry cache,
+     * so repeated opens of paths sharing a prefix don't read any directory blocks.
+     * If a name in the path doesn't exist, or a regular file is found before the end of the path, the file doesn't exist.
      */
     private void openFile() {
 
-        // Get directory bytes pointed to by iNode 2 direct pointers
-        byte[] rootDataBlocks = this.getDirBytes(2);
-        this.dirDataBuffer = ByteBuffer.wrap(rootDataBlocks);    
-        this.dirDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        // Finds the directory specified in the file path string
-        while ((curDirString = getCurDirectoryString()) != "") {
-
-            // Traverse sub-directory from the root
-            dir = new Directory(this);
-            fileInfoList = dir.getFileInfo();
+        int[] lastDirectory = new int[1];
+        int iNodeNumber = this.getVolume().resolve(this.filePathString, lastDirectory);
+        this.dirINodeNumber = lastDirectory[0];
 
-            // Obtain next iNode in directory listing
-            INode nextINode = dir.getNextINode();
-
-            // Check to see if current directory using the file path string actually exists!
-            if (nextINode != null && nextINode.getFileModeAsString().charAt(0) != '-') {
-
-                // Get directory data for current directory in the traversal
-                rootDataBlocks = getDirBytes(dir.getNextINode().getINodeNumber());
-                dirDataBuffer = ByteBuffer.wrap(rootDataBlocks);
-                dirDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
-                isDirectory = true;
-            }
-            // INode exists and points to a file - store the iNode for this file for later reference
-            else if (nextINode != null) {
-                iNode = nextINode;
-                isDirectory = false;
-            }
-        }   
+        // A directory is listed from its own iNode, a regular file keeps its iNode for reading
+        INode iNode = (iNodeNumber != 0) ? this.getVolume().getINode(iNodeNumber) : null;
+        this.isDirectory = iNode != null && iNode.isDirectory();
+        this.iNode = (iNode != null && !iNode.isDirectory()) ? iNode : null;
     }
 
     /** 
@@ -250,57 +548,28 @@ public class Ext2File extends DataBlock {
      */
     private byte[] getDirBytes(int iNodeNumber) {
 
-        // Obtains relevant iNode table pointer based on the iNode number
-        int tablePointerIndex = this.getVolume().getTablePointerForiNode(iNodeNumber, superBlock.getiNodesPerGroup(), superBlock.getTotaliNodes());
-
-        // Create new iNode for the directory in which this file exists in
-        INode iNode = new INode(iNodeNumber, this.getVolume().getiNodeTablePointers()[tablePointerIndex], tablePointerIndex, superBlock);
+        // Obtain the iNode for the directory in which this file exists in (parsed once per volume)
+        INode iNode = this.getVolume().getINode(iNodeNumber);
 
         return (iNode.getDataBlocksFromPointers());
     }
 
-    /**
-     * Method to obtain the current directory name under consideration as a string.
-     * @return The current directory name as a string.
-     */
-    private String getCurDirectoryString() {
-
-        // Obtain individual directory names from filePathString
-        curDirString = "";
-        int slashCount = 0;
-
-        // Iterate over the fileString to obtain individual directory names
-        while (true) {
-
-            if (charCount >= this.filePathString.length()) 
-                break;
-
-            // Break if a forward slash is met
-            if (this.filePathString.charAt(charCount) == '/')
-                if (++slashCount == 2)
-                    break;
-
-            // Append character to current directory name string
-            if (this.filePathString.charAt(charCount) != '/')
-                curDirString += this.filePathString.charAt(charCount);
-            charCount++;
-        }
-        return curDirString;
-    }
-
     /**
      * Returns the list of strings for all files names in a given directory.
      * @return The list of file name strings.
      */
     public List<String> getFileInfoList() {
 
-         // Print out directory contents of a directory
-        if (iNode != null && iNode.getFileModeAsString().charAt(0) == 'd')
-            return fileInfoList;
+        // Print out directory contents of a directory, or of the directory this file exists in
+        return (new Directory(this).getFileInfo());
+    }
 
-        // If not a directory, print contents of directory this file exists in
-        else
-            return (new Directory(this).getFileInfo());
+    /**
+     * Returns the list of names of all files in a given directory, without reading any of their iNodes.
+     * @return The list of file names.
+     */
+    public List<String> getFileNameList() {
+        return (new Directory(this.getVolume(), this.getVolume().getINode(this.dirINodeNumber)).getFileNames());
     }
 
     /**
@@ -315,7 +584,11 @@ public class Ext2File extends DataBlock {
      * Obtains the byte buffer for the current directory.
      * @return Byte buffer reference.
      */
-    public ByteBuffer getDirDataBuffer() {
+    public synchronized ByteBuffer getDirDataBuffer() {
+        if (this.dirDataBuffer == null) {
+            this.dirDataBuffer = ByteBuffer.wrap(this.getDirBytes(this.dirINodeNumber));
+            this.dirDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
         return this.dirDataBuffer;
     }
 
@@ -334,12 +607,4 @@ public class Ext2File extends DataBlock {
     public String getFilenameString() {
         return this.filePathString;
     }
-
-    /**
-     * Obtains the name of the next directory to search in as a string.
-     * @return The directory name as a string.s
-     */
-    public String getNextDirectoryString() {
-        return this.curDirString;
-    }
 }
\ No newline at end of file
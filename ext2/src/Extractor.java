@@ -0,0 +1,311 @@
+package ext2;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Name: Extractor
+ *
+ * This class extracts the whole tree below a directory in a volume to a directory on the host.
+ * The tree is walked in parallel and each regular file is written as it is visited, straight from its block map,
+ * so holes in sparse files stay holes on the host. Mode bits and modified times are copied to every file and directory.
+ * An iNode with several hard links is extracted once, at the first path found, and the other paths are linked to it.
+ * Symbolic links are recreated once every file and directory exists, so nothing is ever written through one.
+ * Entries whose names could place them outside the output directory are rejected. Device files, named pipes and sockets are skipped.
+ * Usage: java ext2.Extractor volume-path output-directory [root-path] [threads]
+ *
+ * @author Harry Baines
+ * @see TreeWalker
+ */
+public class Extractor {
+
+    private static final PosixFilePermission[] PERMISSION_BITS = {
+        PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_READ,
+        PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+        PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ };  /* Permissions, indexed by mode bit */
+
+    private final Volume vol;                       /* The volume to extract from */
+    private final ForkJoinPool pool;                /* The pool the tree is walked on */
+
+    private final Map<Integer, Path> firstLinks = new ConcurrentHashMap<Integer, Path>();          /* The path each hard linked iNode is extracted to */
+    private final ConcurrentLinkedQueue<Link> pendingLinks = new ConcurrentLinkedQueue<Link>();    /* Hard links to create once every file is written */
+    private final ConcurrentLinkedQueue<Link> pendingSymlinks = new ConcurrentLinkedQueue<Link>(); /* Symbolic links to create once every hard link is created */
+    private final ConcurrentLinkedQueue<ExtractedDirectory> directories = new ConcurrentLinkedQueue<ExtractedDirectory>(); /* Directories to set the mode and time of last */
+
+    private final LongAdder files = new LongAdder();        /* Number of regular files written */
+    private final LongAdder bytes = new LongAdder();        /* Number of bytes of regular files written, including holes */
+    private final LongAdder links = new LongAdder();        /* Number of hard links created */
+    private final LongAdder symlinks = new LongAdder();     /* Number of symbolic links created */
+    private final LongAdder skipped = new LongAdder();      /* Number of entries skipped */
+    private final LongAdder errors = new LongAdder();       /* Number of entries which couldn't be extracted */
+
+    /**
+     * Constructor to initialise an extractor which walks on the given fork-join pool.
+     * @param vol The volume to extract from.
+     * @param pool The pool to walk the tree on.
+     */
+    public Extractor(Volume vol, ForkJoinPool pool) {
+        this.vol = vol;
+        this.pool = pool;
+    }
+
+    /**
+     * Main method to extract a volume.
+     * @param args The volume path, the output directory, and optionally the path to extract from and the number of threads.
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 2) {
+            System.out.println("Usage: java ext2.Extractor volume-path output-directory [root-path] [threads]");
+            return;
+        }
+
+        Volume vol = new Volume(args[0]);
+        String root = (args.length > 2) ? args[2] : "/";
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Extractor extractor = new Extractor(vol, pool);
+            long startTime = System.nanoTime();
+            extractor.extract(root, Paths.get(args[1]));
+            System.out.println(extractor.getStatsString(System.nanoTime() - startTime));
+        } catch (IOException e) {
+            System.out.println("Couldn't extract the volume: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Extracts the tree below a directory in the volume to a directory on the host, which is created if needed.
+     * Entries which couldn't be extracted are reported and counted, and the rest of the tree is still extracted.
+     * An entry whose name is empty, "." or "..", or contains '/' or NUL is rejected along with everything below it,
+     * as is any entry whose path on the host would fall outside the output directory.
+     *
+     * @param rootPath The path of the directory in the volume to extract.
+     * @param outputDir The directory on the host to extract to.
+     * @throws IOException if the output directory couldn't be created.
+     */
+    public void extract(String rootPath, Path outputDir) throws IOException {
+
+        Files.createDirectories(outputDir);
+        Path normalOutputDir = outputDir.normalize();
+        this.directories.add(new ExtractedDirectory(outputDir, this.vol.resolve(rootPath)));
+
+        // Write every file and create every directory as the tree is walked
+        new TreeWalker(this.vol, this.pool).walk(rootPath, (path, entry, isDirectory, depth) -> {
+            try {
+                if (!isSafeName(entry.getNameBytes()))
+                    throw new IOException("Unsafe name in the volume");
+                Path hostPath = outputDir.resolve(path.substring(rootPath.length()).replaceFirst("^/+", ""));
+                if (!hostPath.normalize().startsWith(normalOutputDir))
+                    throw new IOException("Path falls outside " + outputDir);
+                return this.extractEntry(hostPath, entry.getINodeNumber(), isDirectory);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Couldn't extract " + path + ": " + e);
+                this.errors.increment();
+                return false;
+            }
+        });
+
+        // Link the other paths of each hard linked iNode to the extracted file
+        for (Link link : this.pendingLinks) {
+            try {
+                Files.deleteIfExists(link.path);
+                Files.createLink(link.path, link.target);
+                this.links.increment();
+            } catch (IOException | UnsupportedOperationException e) {
+                System.out.println("Couldn't link " + link.path + ": " + e);
+                this.errors.increment();
+            }
+        }
+
+        // Create symbolic links last of all, so no file or directory is written through one, but never in place of a directory
+        for (Link link : this.pendingSymlinks) {
+            try {
+                if (!Files.isDirectory(link.path, LinkOption.NOFOLLOW_LINKS))
+                    Files.deleteIfExists(link.path);
+                Files.createSymbolicLink(link.path, link.target);
+                this.symlinks.increment();
+            } catch (IOException | UnsupportedOperationException e) {
+                System.out.println("Couldn't create symbolic link " + link.path + ": " + e);
+                this.errors.increment();
+            }
+        }
+
+        // Set directory modes and times last, deepest first, as writing entries changes them
+        List<ExtractedDirectory> dirs = new ArrayList<ExtractedDirectory>(this.directories);
+        dirs.sort(Comparator.comparingInt((ExtractedDirectory dir) -> dir.path.getNameCount()).reversed());
+        for (ExtractedDirectory dir : dirs)
+            this.setAttributes(dir.path, this.vol.getINode(dir.iNodeNumber));
+    }
+
+    /**
+     * Returns true if a name from the volume can be used as a single path element on the host.
+     * @param name The bytes of the name.
+     * @return False if the name is empty, "." or "..", or contains '/' or NUL.
+     */
+    private static boolean isSafeName(byte[] name) {
+        if (name.length == 0 || (name.length == 1 && name[0] == '.') || (name.length == 2 && name[0] == '.' && name[1] == '.'))
+            return false;
+        for (byte b : name)
+            if (b == '/' || b == 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Extracts a single entry.
+     *
+     * @param hostPath The path on the host to extract to.
+     * @param iNodeNumber The iNode number of the entry.
+     * @param isDirectory True if the entry is a directory.
+     * @throws IOException if the entry couldn't be extracted.
+     * @return True if the entry is a directory which should be walked into.
+     */
+    private boolean extractEntry(Path hostPath, int iNodeNumber, boolean isDirectory) throws IOException {
+
+        if (isDirectory) {
+            Files.createDirectories(hostPath);
+            this.directories.add(new ExtractedDirectory(hostPath, iNodeNumber));
+            return true;
+        }
+
+        INode iNode = this.vol.getINode(iNodeNumber);
+
+        if (iNode.isSymbolicLink())
+            this.pendingSymlinks.add(new Link(hostPath, Paths.get(new String(iNode.getSymbolicLinkTarget(), StandardCharsets.UTF_8))));
+        else if (iNode.isRegularFile()) {
+
+            // Only the first path found for a hard linked iNode is written
+            if (iNode.getNumHardLinks() > 1) {
+                Path first = this.firstLinks.putIfAbsent(iNodeNumber, hostPath);
+                if (first != null) {
+                    this.pendingLinks.add(new Link(hostPath, first));
+                    return false;
+                }
+            }
+
+            // Write the file straight from its block map, leaving holes as holes
+            try (FileChannel channel = FileChannel.open(hostPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                 Ext2File file = Ext2File.openByInodeNumber(this.vol, iNodeNumber)) {
+                this.bytes.add(file.transferTo(channel));
+            }
+            this.setAttributes(hostPath, iNode);
+            this.files.increment();
+        }
+        else
+            this.skipped.increment();
+
+        return false;
+    }
+
+    /**
+     * Copies the permission bits and modified time of an iNode to a path on the host.
+     * Permissions are left as they are if the host file system doesn't support POSIX permissions.
+     *
+     * @param hostPath The path on the host.
+     * @param iNode The iNode to copy from.
+     * @throws IOException if the modified time couldn't be set.
+     */
+    private void setAttributes(Path hostPath, INode iNode) throws IOException {
+
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int bit = 0; bit < PERMISSION_BITS.length; bit++)
+            if ((iNode.getFileMode() & (1 << bit)) != 0)
+                permissions.add(PERMISSION_BITS[bit]);
+
+        Files.setLastModifiedTime(hostPath, FileTime.from(iNode.getLastModifiedEpochSeconds(), TimeUnit.SECONDS));
+        try {
+            Files.setPosixFilePermissions(hostPath, permissions);
+        } catch (UnsupportedOperationException e) {
+            // Permissions can't be represented on this file system
+        }
+    }
+
+    /**
+     * Returns a String summarising what was extracted and how quickly.
+     * @param elapsedNanos The time the extraction took, in nanoseconds.
+     * @return The summary.
+     */
+    public String getStatsString(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        double megabytes = this.bytes.sum() / (1024.0 * 1024.0);
+        String stats = "";
+        stats += "Files extracted:       " + this.files.sum() + " (" + String.format("%.2f", megabytes) + " MB)\n";
+        stats += "Directories created:   " + (this.directories.size() - 1) + "\n";
+        stats += "Hard links created:    " + this.links.sum() + "\n";
+        stats += "Symbolic links:        " + this.symlinks.sum() + "\n";
+        stats += "Skipped (special):     " + this.skipped.sum() + "\n";
+        stats += "Errors:                " + this.errors.sum() + "\n";
+        stats += "Time taken (s):        " + String.format("%.2f", seconds) + "\n";
+        stats += "Throughput:            " + String.format("%.2f MB/s, %.0f files/s", megabytes / seconds, this.files.sum() / seconds) + "\n";
+        return stats;
+    }
+
+    /**
+     * Title: Link
+     *
+     * This inner class represents a hard or symbolic link to create after the tree has been walked.
+     *
+     * @author Harry Baines
+     */
+    private static class Link {
+
+        private final Path path;        /* The path on the host to create the link at */
+        private final Path target;      /* The file the link points to */
+
+        /**
+         * Constructor to initialise a pending link.
+         * @param path The path on the host to create the link at.
+         * @param target The file the link points to.
+         */
+        public Link(Path path, Path target) {
+            this.path = path;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Title: ExtractedDirectory
+     *
+     * This inner class represents a directory created on the host, whose mode and time are set once the tree is extracted.
+     *
+     * @author Harry Baines
+     */
+    private static class ExtractedDirectory {
+
+        private final Path path;        /* The path of the directory on the host */
+        private final int iNodeNumber;  /* The iNode number of the directory in the volume */
+
+        /**
+         * Constructor to initialise an extracted directory.
+         * @param path The path of the directory on the host.
+         * @param iNodeNumber The iNode number of the directory in the volume.
+         */
+        public ExtractedDirectory(Path path, int iNodeNumber) {
+            this.path = path;
+            this.iNodeNumber = iNodeNumber;
+        }
+    }
+}
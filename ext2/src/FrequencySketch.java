@@ -0,0 +1,110 @@
+package ext2;
+
+/**
+ * Name: FrequencySketch
+ *
+ * This class provides a compact, approximate count of how often each key has been seen recently (a count-min sketch).
+ * Each key is counted in four 4-bit counters packed into an array of longs, and its frequency is the smallest of the four.
+ * Once a set number of increments have been recorded all counters are halved, so old popularity fades over time.
+ * This is used as the TinyLFU admission filter for the block cache.
+ *
+ * @author Harry Baines
+ * @see BlockCache
+ */
+public class FrequencySketch {
+
+    public static final int MAX_COUNT         = 15;                     /* The largest value a 4-bit counter can hold */
+    public static final long RESET_MASK       = 0x7777777777777777L;    /* Mask to clear the bits shifted between counters when halving */
+    public static final int SAMPLE_MULTIPLIER = 10;                     /* Number of increments per tracked key before counters are halved */
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    private long[] table;           /* Table of packed 4-bit counters, 16 per long */
+    private int tableMask;          /* Mask to find an index into the table */
+    private int sampleSize;         /* Number of increments after which all counters are halved */
+    private int additions;          /* Number of increments since the counters were last halved */
+
+    /**
+     * Constructor to initialise a sketch sized for the given number of keys.
+     * @param maximumSize The maximum number of keys that will be held by the cache using this sketch.
+     */
+    public FrequencySketch(int maximumSize) {
+        int tableSize = Integer.highestOneBit(Math.max(2, maximumSize) - 1) << 1;
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = Math.max(1, maximumSize) * SAMPLE_MULTIPLIER;
+    }
+
+    /**
+     * Records an occurrence of the given key.
+     * @param key The key to count.
+     */
+    public void increment(long key) {
+
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++)
+            added |= this.incrementAt(this.indexOf(key, i), this.counterOf(key, i));
+
+        // Age all counters once enough occurrences have been seen
+        if (added && ++this.additions >= this.sampleSize)
+            this.reset();
+    }
+
+    /**
+     * Returns the estimated number of recent occurrences of the given key.
+     * @param key The key to look up.
+     * @return The estimated frequency, from 0 to MAX_COUNT.
+     */
+    public int frequency(long key) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int shift = this.counterOf(key, i) << 2;
+            frequency = Math.min(frequency, (int) ((this.table[this.indexOf(key, i)] >>> shift) & 0xFL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments a single counter unless it is already at the maximum count.
+     * @param index The index of the long holding the counter.
+     * @param counter The counter within the long, from 0 to 15.
+     * @return True if the counter was incremented.
+     */
+    private boolean incrementAt(int index, int counter) {
+        int shift = counter << 2;
+        if (((this.table[index] >>> shift) & 0xFL) == MAX_COUNT)
+            return false;
+        this.table[index] += 1L << shift;
+        return true;
+    }
+
+    /**
+     * Halves every counter in the table.
+     */
+    private void reset() {
+        for (int i = 0; i < this.table.length; i++)
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        this.additions /= 2;
+    }
+
+    /**
+     * Finds the index in the table for the given key and hash function.
+     * @param key The key being counted.
+     * @param i The hash function to use.
+     * @return The index of the long holding the counter.
+     */
+    private int indexOf(long key, int i) {
+        long hash = BlockCache.mix(key * SEEDS[i]);
+        return (int) (hash >>> 32) & this.tableMask;
+    }
+
+    /**
+     * Finds the counter within a long for the given key and hash function.
+     * @param key The key being counted.
+     * @param i The hash function to use.
+     * @return The counter within the long, from 0 to 15.
+     */
+    private int counterOf(long key, int i) {
+        return (int) (BlockCache.mix(key + SEEDS[i]) & 0xF);
+    }
+}
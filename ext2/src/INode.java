@@ -3,12 +3,17 @@ package ext2;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
-import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
-import java.util.Date;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 /**
  * Name: iNode
@@ -16,6 +21,7 @@ import java.text.SimpleDateFormat;
  * This class represents an iNode in the filesystem.
  * Every file can be located by it's respective iNode and contains metadata about the file.
  * The iNode contains pointers to the blocks which are represented by the iNode.
+ * iNodes are immutable once parsed (the block map is only built once), so they can be shared through the volume's iNode cache.
  *
  * @author Harry Baines
  * @see DataBlock
@@ -28,6 +34,13 @@ public class INode extends DataBlock {
 
     public static final char[] permissions = { 'r', 'w', 'x' };    /* User/Group/Others can Read/Write/Execute */
 
+    public static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("MMM dd HH:mm")
+                                                            .withZone(ZoneId.systemDefault());          /* Format of access, creation and modified times */
+    public static final DateTimeFormatter DELETED_TIME_FORMAT = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US)
+                                                            .withZone(ZoneId.systemDefault());          /* Format of the deleted time */
+
+    private static final String[] MODE_STRINGS = INode.buildModeStrings();  /* File mode strings, indexed by the directory bit and permission bits */
+
     /* OFFSET CONSTANTS */
     public static final int FILE_MODE_OFFSET       = 0;     /* Offset, in bytes, for the file mode */
     public static final int USER_ID_LOWER_OFFSET   = 2;     /* Offset, in bytes, for the lower 16 bits of the user ID */
@@ -39,49 +52,55 @@ public class INode extends DataBlock {
     public static final int GROUP_ID_LOWER_OFFSET  = 24;    /* Offset, in bytes, for the lower 16 bits of the group ID */
     public static final int HARD_LINKS_OFFSET      = 26;    /* Offset, in bytes, for the number of hard links */
     public static final int NUM_512_BLOCKS_OFFSET  = 28;    /* Offset, in bytes, for the number of 512 byte blocks */
+    public static final int FLAGS_OFFSET           = 32;    /* Offset, in bytes, for the iNode flags */
     public static final int DIRECT_POINTERS_OFFSET = 40;    /* Offset, in bytes, for the direct pointers */   
     public static final int INDIRECT_OFFSET        = 88;    /* Offset, in bytes, for the indirect pointer */
     public static final int DBL_INDIRECT_OFFSET    = 92;    /* Offset, in bytes, for the double indirect pointer */
     public static final int TRPL_INDIRECT_OFFSET   = 96;    /* Offset, in bytes, for the triple indirect pointer */
     public static final int FILE_SIZE_UPPER_OFFSET = 108;   /* Offset, in bytes, for the upper 32 bits of the file size */
     public static final int NUM_DIRECT_POINTERS    = 12;    /* Total number of direct pointers in the iNode */
+    public static final int FILE_TYPE_MASK         = 0xF000;    /* Mask for the file type bits of the file mode */
+    public static final int DIRECTORY_TYPE         = 0x4000;    /* File type bits of the file mode for a directory */
+    public static final int REGULAR_FILE_TYPE      = 0x8000;    /* File type bits of the file mode for a regular file */
+    public static final int SYMLINK_TYPE           = 0xA000;    /* File type bits of the file mode for a symbolic link */
+    public static final int FAST_SYMLINK_MAX_LENGTH = 60;       /* Length below which a symbolic link's target is stored in the block pointers */
+    public static final int INDEX_FLAG             = 0x1000;    /* iNode flag set on directories with a hashed index */
+    public static final int ASYNC_READ_CHUNK_SIZE  = 1024 * 1024;   /* Maximum number of bytes copied by each task of an asynchronous read */
 
     /* INODE FIELDS */
     private short fileMode;                                 /* File mode field */
     private short userIDLower;                              /* Lower 16 bits of user ID field */
     private int fileSizeLower;                              /* Lower 16 bits of file size field */
-    private String lastAccessTime;                          /* Last access time field */
-    private String creationTime;                            /* Creation time field */
-    private String lastModifiedTime;                        /* Last modified field */
-    private String deletedTime;                             /* Deleted time field */
+    private long lastAccessTime;                            /* Last access time field, in seconds since the epoch */
+    private long creationTime;                              /* Creation time field, in seconds since the epoch */
+    private long lastModifiedTime;                          /* Last modified field, in seconds since the epoch */
+    private long deletedTime;                               /* Deleted time field, in seconds since the epoch */
+    private String lastModifiedString;                      /* Formatted last modified time, set on first use */
     private short groupIDLower;                             /* Lower 16 bits of group ID field */
     private short numHardLinks;                             /* Number of hard links field */
     private int num512ByteBlocks;                           /* Number of 512 byte blocks field */
+    private int flags;                                      /* iNode flags field */
     private int singleIndirectP;                            /* Single indirect pointer field */
     private int doubleIndirectP;                            /* Double indirect pointer field */
     private int tripleIndirectP;                            /* Triple indirect pointer field */
     private int fileSizeUpper;                              /* Upper 16 bits of file size field */
     private long totalFileSize;                             /* Total file size */
-    private List<Integer> directPointers;                   /* Dynamic list of all direct pointers */
+    private int[] directPointers;                           /* Array of all direct pointers */
 
     private long iNodeTblOffset;                            /* Stores the offset, in bytes where the iNode table can be located */
     private long iNodeOffsetInTbl;                          /* Stores the offset, in bytes the iNode is in the iNode table */
     private long offsetInVol;                               /* Stores the offset, in bytes where iNode can be located in the volume */
 
-    private ByteBuffer iNodeBuffer;                         /* Byte buffer to store the bytes in the iNode */
-    private byte[] iNodeBytes;                              /* Array to store all bytes in the iNode */
 
     private SuperBlock superBlock;                          /* The super block reference to obtain file system characteristics */
     private int indirectBlockSize;                          /* The size of each indirect block containing block pointers */
     private int iNodeTblPointer;                            /* Pointer to an iNode table pointer */
+    private volatile BlockMap blockMap;                     /* Map of logical to physical blocks, built on first use */
+    private volatile DirectoryIndex directoryIndex;         /* In-memory index of names for a directory, built on first lookup */
 
     private int groupNum;                                   /* The group number this iNode belongs in */
     private int iNodeNumber;                                /* The number for this iNode */
     private long iNodeOffset;                               /* The offset, in bytes, that the iNode is at in the filsystem */
-    private int levelToReach;                               /* Final level of indirection to reach to obtain data block pointers */
-    private List<Integer> blockPointers;                    /* Dynamic list of final data block pointers */
-    private List<Byte> allDataBlocks;                       /* Array list to store all relevant data blocks for the file */
-    private boolean firstBlockHasData;                      /* Boolean to track if the first block at level of indirection has a valid block pointer */
 
     /**
      * Constructor to initialise an iNode with the relevant fields.
@@ -101,41 +120,39 @@ public class INode extends DataBlock {
         this.groupNum = groupNum;
         this.superBlock = superBlock;
         this.iNodeOffset = this.calculateiNodeByteOffset(iNodeTblPointer, iNodeNumber, groupNum);
-        firstBlockHasData = false;
 
-        // Create array of bytes for this iNode
-        iNodeBytes = this.readBlock(iNodeOffset, superBlock.getiNodeSize());
-
-        // Wrap in buffer for later reading
-        iNodeBuffer = ByteBuffer.wrap(iNodeBytes);
+        // Create array of bytes for this iNode, wrapped in a buffer for reading - the bytes aren't kept once parsed
+        ByteBuffer iNodeBuffer = ByteBuffer.wrap(this.readBlock(iNodeOffset, superBlock.getiNodeSize()));
         iNodeBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
         // Set the indirect block size
         indirectBlockSize = superBlock.getBlockSize() / Integer.BYTES;
 
         // Initialise all the iNode fields
-        this.initINodeFields();
+        this.initINodeFields(iNodeBuffer);
     }
 
     /**
      * Method to initialise all the relevant iNode fields upon instantiation of this iNode.
+     * @param iNodeBuffer The buffer containing the bytes of this iNode.
      */
-    private void initINodeFields() {
+    private void initINodeFields(ByteBuffer iNodeBuffer) {
         
         this.fileMode         = iNodeBuffer.getShort(FILE_MODE_OFFSET);
         this.userIDLower      = iNodeBuffer.getShort(USER_ID_LOWER_OFFSET);
         this.fileSizeLower    = iNodeBuffer.getInt(FILE_SIZE_LOWER_OFFSET);
 
-        this.lastAccessTime   = new SimpleDateFormat("MMM dd HH:mm").format(new Date((long) iNodeBuffer.getInt(LAST_ACCESS_OFFSET) * 1000));
-        this.creationTime     = new SimpleDateFormat("MMM dd HH:mm").format(new Date((long) iNodeBuffer.getInt(CREATION_OFFSET) * 1000));
-        this.lastModifiedTime = new SimpleDateFormat("MMM dd HH:mm").format(new Date((long) iNodeBuffer.getInt(LAST_MODIFIED_OFFSET) * 1000));
-        this.deletedTime      = (iNodeBuffer.getInt(DELETED_OFFSET) == 0) ? "-" : new Date((long) iNodeBuffer.getInt(DELETED_OFFSET) * 1000).toString();
+        this.lastAccessTime   = iNodeBuffer.getInt(LAST_ACCESS_OFFSET);
+        this.creationTime     = iNodeBuffer.getInt(CREATION_OFFSET);
+        this.lastModifiedTime = iNodeBuffer.getInt(LAST_MODIFIED_OFFSET);
+        this.deletedTime      = iNodeBuffer.getInt(DELETED_OFFSET);
 
         this.groupIDLower     = iNodeBuffer.getShort(GROUP_ID_LOWER_OFFSET);
         this.numHardLinks     = iNodeBuffer.getShort(HARD_LINKS_OFFSET);
         this.num512ByteBlocks = iNodeBuffer.getInt(NUM_512_BLOCKS_OFFSET);
+        this.flags            = iNodeBuffer.getInt(FLAGS_OFFSET);
 
-        this.directPointers   = this.getDirectPointers();
+        this.directPointers   = this.getDirectPointers(iNodeBuffer);
         this.singleIndirectP  = iNodeBuffer.getInt(INDIRECT_OFFSET);
         this.doubleIndirectP  = iNodeBuffer.getInt(DBL_INDIRECT_OFFSET);
         this.tripleIndirectP  = iNodeBuffer.getInt(TRPL_INDIRECT_OFFSET);
@@ -154,7 +171,7 @@ public class INode extends DataBlock {
     private long calculateiNodeByteOffset(int iNodeTblPointer, int iNodeNumber, int groupNum) {
 
         // Obtain byte offset for iNode table pointer
-        iNodeTblOffset = iNodeTblPointer * superBlock.getBlockSize();
+        iNodeTblOffset = (long) iNodeTblPointer * superBlock.getBlockSize();
 
         // Obtain iNode byte offset in the iNode table
         iNodeOffsetInTbl = (((iNodeNumber - 1) - (groupNum * superBlock.getiNodesPerGroup())) * superBlock.getiNodeSize());
@@ -166,172 +183,289 @@ public class INode extends DataBlock {
     }
 
     /**
-     * Retrieves an array of bytes referenced by the direct pointers in this iNode.
-     * If the indirection pointer fields are not empty, a recursive method is called to obtain data block pointers.
+     * Reads at most length bytes of file data starting at byte offset position in the file.
+     * The block map is used to find the blocks covering the requested bytes, and each run of contiguous blocks
+     * is copied from the volume in one read, so the cost depends on the length requested rather than the size of the file.
+     * Holes in the file read as 0s.
      *
-     * @return Array of bytes for the data blocks being pointed to.
+     * @param position The byte offset in the file to begin reading from.
+     * @param dst The array to copy the file data into.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The maximum number of bytes to read.
+     * @return The number of bytes read, which is less than length if the end of the file is reached.
      */
-    public byte[] getDataBlocksFromPointers() {
+    public int read(long position, byte[] dst, int dstOffset, int length) {
+        Volume vol = this.getVolume();
+        return this.forEachRun(this.getBlockMap(), position, dst, dstOffset, length, Integer.MAX_VALUE,
+            (startByte, copyOffset, copyLength) -> vol.readBytes(startByte, dst, copyOffset, copyLength));
+    }
 
-        int indirectionLevel = 0;
+    /**
+     * Reads at most length bytes of file data starting at byte offset position in the file, without blocking the caller.
+     * The block map is found on the executor, then each run of contiguous blocks covering the requested bytes is copied
+     * from the volume as a separate task of at most ASYNC_READ_CHUNK_SIZE bytes. The first run is copied on the thread
+     * that found the block map, so a read within one run takes a single task. Holes in the file read as 0s.
+     *
+     * @param position The byte offset in the file to begin reading from.
+     * @param dst The array to copy the file data into, which mustn't be used until the future completes.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The maximum number of bytes to read.
+     * @param executor The executor to read on.
+     * @return A future completed with the number of bytes read, or completed exceptionally if the volume couldn't be read.
+     */
+    public CompletableFuture<Integer> readAsync(long position, byte[] dst, int dstOffset, int length, Executor executor) {
+        return CompletableFuture.supplyAsync(this::getBlockMap, executor)
+            .thenCompose(blockMap -> this.readRuns(blockMap, position, dst, dstOffset, length, executor));
+    }
 
-        // Get all data blocks using just direct pointers from this iNode
-        allDataBlocks = this.getDataBlocks(this.directPointers);
+    /**
+     * Copies the runs of blocks covering the requested bytes, each as a task on the executor except the first.
+     *
+     * @param blockMap The block map of this iNode.
+     * @param position The byte offset in the file to begin reading from.
+     * @param dst The array to copy the file data into.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The maximum number of bytes to read.
+     * @param executor The executor to copy runs on.
+     * @return A future completed with the number of bytes read once every run has been copied, or completed exceptionally
+     *         once every task that was started has finished if a run couldn't be copied.
+     */
+    private CompletableFuture<Integer> readRuns(BlockMap blockMap, long position, byte[] dst, int dstOffset, int length, Executor executor) {
+
+        Volume vol = this.getVolume();
+        List<CompletableFuture<Void>> copies = new ArrayList<CompletableFuture<Void>>();
+        long[] firstRun = { -1, 0, 0 };     /* The start byte, offset in dst and length of the run copied on this thread */
+
+        int bytesRead = 0;
+        Throwable failure = null;
+        try {
+            // The first run is kept to copy here, and every other run is copied as a task
+            bytesRead = this.forEachRun(blockMap, position, dst, dstOffset, length, ASYNC_READ_CHUNK_SIZE, (startByte, copyOffset, copyLength) -> {
+                if (firstRun[0] < 0) {
+                    firstRun[0] = startByte;
+                    firstRun[1] = copyOffset;
+                    firstRun[2] = copyLength;
+                }
+                else
+                    copies.add(CompletableFuture.runAsync(() -> vol.readBytes(startByte, dst, copyOffset, copyLength), executor));
+            });
 
-        // Find indirect pointers and search through blocks to find data blocks
-        int singleIndirectPointer = this.getIndirectPointer();                    // Initial indirect pointer in iNode
-        int doubleIndirectPointer = this.getDoubleIndirectPointer();              // Initial double-indirect pointer in iNode
-        int tripleIndirectPointer = this.getTripleIndirectPointer();              // Initial triple-indirect pointer in iNode
+            if (firstRun[0] >= 0)
+                vol.readBytes(firstRun[0], dst, (int) firstRun[1], (int) firstRun[2]);
+        }
+        catch (Throwable t) {
+            failure = t;
+        }
 
-        // Single indirection
-        if (singleIndirectPointer != 0)
-            this.addDataBlocksForInitialPointer(singleIndirectPointer, 1, allDataBlocks);
+        CompletableFuture<Void> allCopies = CompletableFuture.allOf(copies.toArray(new CompletableFuture<?>[0]));
+        if (failure == null) {
+            int totalRead = bytesRead;
+            return allCopies.thenApply(v -> totalRead);
+        }
 
-        // Double indirection
-        if (doubleIndirectPointer != 0)
-            this.addDataBlocksForInitialPointer(doubleIndirectPointer, 2, allDataBlocks);
+        // Tasks already queued still write into dst, so only fail once they have all finished
+        Throwable readFailure = failure;
+        return allCopies.handle((v, t) -> {
+            throw (readFailure instanceof CompletionException) ? (CompletionException) readFailure : new CompletionException(readFailure);
+        });
+    }
 
-        // Triple indirection
-        if (tripleIndirectPointer != 0)
-            this.addDataBlocksForInitialPointer(tripleIndirectPointer, 3, allDataBlocks);
+    /**
+     * Finds the runs of contiguous blocks covering the requested bytes, shared by read() and readAsync().
+     * Holes are filled with 0s here, and each run stored on the volume is passed to the copier, split into pieces
+     * of at most maxRunLength bytes.
+     *
+     * @param blockMap The block map of this iNode.
+     * @param position The byte offset in the file to begin reading from.
+     * @param dst The array to copy the file data into.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The maximum number of bytes to read.
+     * @param maxRunLength The maximum number of bytes passed to the copier at once.
+     * @param copier Copies each run from the volume.
+     * @return The number of bytes covered, which is less than length if the end of the file is reached.
+     */
+    private int forEachRun(BlockMap blockMap, long position, byte[] dst, int dstOffset, int length, int maxRunLength, RunCopier copier) {
+
+        int blockSize = superBlock.getBlockSize();
+
+        // Don't read beyond the end of the file
+        int bytesToRead = (int) Math.max(0, Math.min(length, this.getTotalFileSize() - position));
+        int bytesRead = 0;
+        int extent = blockMap.findExtent(position / blockSize);
+
+        while (bytesRead < bytesToRead) {
+            long extentStart = blockMap.getLogicalStart(extent) * blockSize;
+            long extentEnd = extentStart + (long) blockMap.getLength(extent) * blockSize;
+            int toCopy = (int) Math.min(Math.min(bytesToRead - bytesRead, extentEnd - position), maxRunLength);
+
+            // Fill holes with 0s, otherwise copy from the run of blocks on the volume
+            if (blockMap.isHole(extent))
+                Arrays.fill(dst, dstOffset + bytesRead, dstOffset + bytesRead + toCopy, (byte) 0);
+            else
+                copier.copy(blockMap.getPhysicalStart(extent) * blockSize + (position - extentStart), dstOffset + bytesRead, toCopy);
+
+            position += toCopy;
+            bytesRead += toCopy;
+            if (position >= extentEnd)
+                extent++;
+        }
+        return bytesRead;
+    }
 
-        // Transfer dynamic array list into array to return
-        byte[] byteArray = new byte[allDataBlocks.size()];
-        for (int i = 0; i < allDataBlocks.size(); i++)
-            byteArray[i] = allDataBlocks.get(i);
-        return byteArray;
+    /**
+     * Translates a logical block number in the file to the physical block number on the volume.
+     * @param logicalBlock The block number from the start of the file.
+     * @return The physical block number, or 0 if the block is in a hole in the file.
+     */
+    public long getPhysicalBlock(long logicalBlock) {
+        return this.getBlockMap().getPhysicalBlock(logicalBlock);
     }
 
     /**
-     * Obtains a dynamic list of data blocks given a set of block pointers.
+     * Retrieves an array of all bytes of file data referenced by this iNode.
+     * The array is sized from the file size and the file data is read straight into it.
+     * Holes in the file are left as 0s.
      *
-     * @param pointers Dynamic list of pointers that point to data blocks.
-     * @return Dynamic byte list from data blocks.
+     * @throws IllegalStateException if the file is too large to fit in a single array.
+     * @return Array of bytes for the data blocks being pointed to.
      */
-    private List<Byte> getDataBlocks(List<Integer> pointers) {
+    public byte[] getDataBlocksFromPointers() {
 
-        // Create array of data blocks found from indirect pointers
-        List<Byte> byteList = new ArrayList<Byte>();
+        if (this.getTotalFileSize() > Integer.MAX_VALUE)
+            throw new IllegalStateException("File is too large to read into a single array - use read() instead.");
 
-        // Iterate over pointers provided to retrieve data blocks
-        for (int i : pointers) {
-            if (i != 0) {
-                byte[] dataBlocksArray = this.readBlock(i * superBlock.getBlockSize(), superBlock.getBlockSize());
-                for (int curByte = 0; curByte < dataBlocksArray.length; curByte++) {
-                    byteList.add(dataBlocksArray[curByte]);
-                }
-            }
+        byte[] fileData = new byte[(int) Math.max(0, this.getTotalFileSize())];
+        this.read(0, fileData, 0, fileData.length);
+        return fileData;
+    }
+
+    /**
+     * Returns the map of logical to physical blocks for this iNode.
+     * The map is built the first time it is needed, by reading every block of indirect pointers once, and then kept.
+     * @return The block map.
+     */
+    public BlockMap getBlockMap() {
+        BlockMap map = this.blockMap;
+        if (map == null) {
+            map = this.buildBlockMap();
+            this.blockMap = map;
         }
-        return byteList;
+        return map;
     }
 
     /**
-     * Method which adds data blocks to the passed dynamic list of bytes.
-     * This method first calls getPointersByIndirectionLevel() based on the level passed.
-     * Then using these pointers, the relevant data blocks are added to the dynamic list.
-     *
-     * @param indirectPointer The initial indirect pointer that points to the first block of indirect pointers.
-     * @param indLevel The level of indirection the method should traverse up to.
-     * @param allDataBlocks The dynamic list of data bytes from data blocks.
+     * Builds the map of logical to physical blocks by traversing the direct and indirect pointers in this iNode.
+     * The map covers every block up to the file size, with any blocks that aren't allocated marked as holes.
+     * @return The block map.
      */
-    private void addDataBlocksForInitialPointer(int indirectPointer, int indLevel, List<Byte> allDataBlocks) {
+    private BlockMap buildBlockMap() {
 
-        this.levelToReach = indLevel;
+        BlockMap map = new BlockMap();
+        long blocksInFile = (Math.max(0, this.getTotalFileSize()) + superBlock.getBlockSize() - 1) / superBlock.getBlockSize();
 
-        // Stores all pointers found that aren't 0
-        blockPointers = new ArrayList<Integer>();
+        // Reusable arrays for one block of pointers at each level of indirection, and the raw bytes of a block
+        int[][] pointerBlocks = new int[3][indirectBlockSize];
+        byte[] pointerBytes = new byte[superBlock.getBlockSize()];
 
-        // Obtains all non-0 pointers from 'indLevel' levels of indirection, given an initial indirect pointer 
-        List<Integer> pointersFromIndirectionLevel = this.getPointersByIndirectionLevel(1, this.getIndirectBlockPointers(indirectPointer));
+        // Direct pointers, then single, double and triple indirection
+        long remaining = this.addBlocks(map, this.directPointers, NUM_DIRECT_POINTERS, blocksInFile);
+        remaining = this.addBlocksByIndirectionLevel(map, this.getIndirectPointer(), 1, remaining, pointerBlocks, pointerBytes);
+        remaining = this.addBlocksByIndirectionLevel(map, this.getDoubleIndirectPointer(), 2, remaining, pointerBlocks, pointerBytes);
+        remaining = this.addBlocksByIndirectionLevel(map, this.getTripleIndirectPointer(), 3, remaining, pointerBlocks, pointerBytes);
 
-        // Transfer all found data from indirect pointers into 'master' list
-        for (byte b : this.getDataBlocks(pointersFromIndirectionLevel))
-            allDataBlocks.add(b);
+        // A file size beyond what the pointers can address is treated as a hole
+        map.append(0, remaining);
+        map.trim();
+        return map;
     }
 
     /**
-     * Method to traverse the file system given the an initial level of indirection.
-     * This method is recursive and is given an initial list of indirection pointers to begin the traversal.
+     * Appends the blocks for a set of data block pointers to the block map.
      *
-     * @param indirectionLevel The levels of indirection to traverse.
-     * @param indirectTableBlockPointers The initial dynamic list of pointers to begin traversal.
-     * @return The dynamic list of pointers to blocks found from the traversal.
+     * @param map The block map being built.
+     * @param pointers The array of pointers that point to data blocks (0 for a hole).
+     * @param numPointers The number of pointers in the array to use.
+     * @param remaining The number of blocks in the file not yet added to the map.
+     * @return The number of blocks remaining after these pointers.
      */
-    private List<Integer> getPointersByIndirectionLevel(int indirectionLevel, List<Integer> indirectTableBlockPointers) {
-
-        // Iterate over block of pointers at given level of recursion
-        for (int p : indirectTableBlockPointers) {
-
-            // Append 0s to result data if zeros precede data
-            if (indirectionLevel == levelToReach) {
-                if (p == 0 && !firstBlockHasData) {
-                    allDataBlocks.add((byte)0);         // Each preceding 0 represents a single block with no data
-                }
-            }
+    private long addBlocks(BlockMap map, int[] pointers, int numPointers, long remaining) {
+        for (int i = 0; i < numPointers && remaining > 0; i++, remaining--)
+            map.append(pointers[i] & 0xFFFFFFFFL, 1);
+        return remaining;
+    }
 
-            // If pointer points to data
-            if (p != 0) {
+    /**
+     * Method to traverse the blocks of pointers under an indirect pointer, appending every data block found to the block map.
+     * This method is recursive, descending one level of indirection per call until the data block pointers are reached.
+     * A 0 pointer at any level is a hole covering every block beneath it, so nothing beneath it is read.
+     *
+     * @param map The block map being built.
+     * @param indirectPointer The pointer to the block of pointers to traverse.
+     * @param indirectionLevel The levels of indirection remaining beneath this pointer.
+     * @param remaining The number of blocks in the file not yet added to the map.
+     * @param pointerBlocks Reusable arrays for one block of pointers at each level of indirection.
+     * @param pointerBytes Reusable array for the raw bytes of a block of pointers.
+     * @return The number of blocks remaining after the blocks beneath this pointer.
+     */
+    private long addBlocksByIndirectionLevel(BlockMap map, int indirectPointer, int indirectionLevel, long remaining, int[][] pointerBlocks, byte[] pointerBytes) {
+
+        if (remaining == 0)
+            return 0;
+
+        // A hole covers every block beneath this pointer
+        if (indirectPointer == 0) {
+            long span = 1;
+            for (int i = 0; i < indirectionLevel; i++)
+                span *= indirectBlockSize;
+            long holeBlocks = Math.min(span, remaining);
+            map.append(0, holeBlocks);
+            return remaining - holeBlocks;
+        }
 
-                indirectionLevel++;
+        int[] pointers = this.getIndirectBlockPointers(indirectPointer, pointerBlocks[indirectionLevel - 1], pointerBytes);
 
-                // Add data block pointer to final list
-                if (indirectionLevel > levelToReach)  {
-                    blockPointers.add(p);
-                }
+        // Pointers at the last level of indirection point to data blocks
+        if (indirectionLevel == 1)
+            return this.addBlocks(map, pointers, indirectBlockSize, remaining);
 
-                // Recurse until final indirection level is met
-                else {
-                    getPointersByIndirectionLevel(indirectionLevel, this.getIndirectBlockPointers(p));
-                }
-            }  
-        }
-        return blockPointers;
+        for (int i = 0; i < indirectBlockSize && remaining > 0; i++)
+            remaining = this.addBlocksByIndirectionLevel(map, pointers[i], indirectionLevel - 1, remaining, pointerBlocks, pointerBytes);
+        return remaining;
     }
 
     /**
-     * Method to retrieve a dynamic list of indirect block pointers given a block number.
+     * Method to read a block of indirect pointers into an array given a block number.
      * 
      * @param blockNum The number of the block to get indirect pointers from.
-     * @return The dynamic list of indirect block pointers.
+     * @param pointers The array to store the pointers in.
+     * @param pointerBytes Reusable array for the raw bytes of the block.
+     * @return The array of indirect block pointers.
      */
-    private List<Integer> getIndirectBlockPointers(int blockNum) {
-        
-        List<Integer> indirectPointers = new ArrayList<Integer>();
+    private int[] getIndirectBlockPointers(int blockNum, int[] pointers, byte[] pointerBytes) {
 
         // Obtains bytes for the indirect table of block pointers
-        byte[] indirectTableBytes = this.readBlock(blockNum * superBlock.getBlockSize(), superBlock.getBlockSize());
-
-        ByteBuffer indirectBuffer = ByteBuffer.wrap(indirectTableBytes);
-        indirectBuffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        // Iterate over the indirect table block size
-        int count = 0;
-        while (count < indirectBlockSize) {
-
-            // Obtain pointer
-            int p = indirectBuffer.getInt(Integer.BYTES * count);
-            if (p != 0 && count == 0)
-                firstBlockHasData = true;
+        this.getVolume().readBytes((blockNum & 0xFFFFFFFFL) * superBlock.getBlockSize(), pointerBytes, 0, pointerBytes.length);
 
-            // Add to list
-            indirectPointers.add(p);
-            count++;
+        // Decode each little endian pointer
+        for (int i = 0; i < indirectBlockSize; i++) {
+            int b = i * Integer.BYTES;
+            pointers[i] = (pointerBytes[b] & 0xFF) | (pointerBytes[b + 1] & 0xFF) << 8 | (pointerBytes[b + 2] & 0xFF) << 16 | (pointerBytes[b + 3] & 0xFF) << 24;
         }
-        return indirectPointers;
+        return pointers;
     }
 
     /**
      * Retrieves the 12 4-byte integer direct data block pointers, directly from the iNode.
-     * @return A list of the 12 direct data block pointers.
+     * @param iNodeBuffer The buffer containing the bytes of this iNode.
+     * @return An array of the 12 direct data block pointers.
      */
-    private List<Integer> getDirectPointers() {
+    private int[] getDirectPointers(ByteBuffer iNodeBuffer) {
 
-        directPointers = new ArrayList<Integer>(NUM_DIRECT_POINTERS);
+        int[] directPointers = new int[NUM_DIRECT_POINTERS];
 
-        // Transfer direct pointers to list
-        int count = 0;
-        while (count < NUM_DIRECT_POINTERS)
-            directPointers.add(iNodeBuffer.getInt(DIRECT_POINTERS_OFFSET + (Integer.BYTES * count++)));
+        // Transfer direct pointers to array
+        for (int i = 0; i < NUM_DIRECT_POINTERS; i++)
+            directPointers[i] = iNodeBuffer.getInt(DIRECT_POINTERS_OFFSET + (Integer.BYTES * i));
 
         return directPointers;
     }
@@ -343,18 +477,109 @@ public class INode extends DataBlock {
      * @return String representation of the file mode.
      */
     public String getFileModeAsString() {
+        int fileMode = this.getFileMode();
+        return MODE_STRINGS[((fileMode & fileModeCodes[0]) != 0 ? 0x200 : 0) | (fileMode & 0x1FF)];
+    }
+
+    /**
+     * Builds the table of file mode strings, e.g. "drwxr-xr-x", for every combination of the directory bit and permission bits.
+     * @return The table of file mode strings.
+     */
+    private static String[] buildModeStrings() {
 
-        // Obtain short file mode
-        short fileMode = this.getFileMode();
+        String[] modeStrings = new String[0x400];
+        for (int index = 0; index < modeStrings.length; index++) {
 
-        // Obtain file mode read/write/execute permissions string - Directory or File
-        String fileInfo = ((fileMode & fileModeCodes[0]) > 0) ? "d" : "-";  
+            // Directory or File
+            char[] fileInfo = new char[fileModeCodes.length];
+            fileInfo[0] = ((index & 0x200) != 0) ? 'd' : '-';
 
-        // Iterate over possible file mode hex codes
-        for (int i = 1; i < fileModeCodes.length; i++)
-            fileInfo += ((fileMode & fileModeCodes[i]) > 0) ? permissions[(i-1) % permissions.length] : "-";
+            // Iterate over possible file mode hex codes
+            for (int i = 1; i < fileModeCodes.length; i++)
+                fileInfo[i] = ((index & fileModeCodes[i]) != 0) ? permissions[(i-1) % permissions.length] : '-';
 
-        return fileInfo;
+            modeStrings[index] = new String(fileInfo);
+        }
+        return modeStrings;
+    }
+
+    /**
+     * Returns true if this iNode is a directory.
+     * @return True for a directory, false otherwise.
+     */
+    public boolean isDirectory() {
+        return (this.getFileMode() & FILE_TYPE_MASK) == DIRECTORY_TYPE;
+    }
+
+    /**
+     * Returns true if this iNode is a regular file.
+     * @return True for a regular file, false otherwise.
+     */
+    public boolean isRegularFile() {
+        return (this.getFileMode() & FILE_TYPE_MASK) == REGULAR_FILE_TYPE;
+    }
+
+    /**
+     * Returns true if this iNode is a symbolic link.
+     * @return True for a symbolic link, false otherwise.
+     */
+    public boolean isSymbolicLink() {
+        return (this.getFileMode() & FILE_TYPE_MASK) == SYMLINK_TYPE;
+    }
+
+    /**
+     * Retrieves the target of a symbolic link.
+     * Short targets are stored in place of the block pointers ("fast" symbolic links), longer ones in a data block.
+     *
+     * @throws IllegalStateException if this iNode isn't a symbolic link.
+     * @return The bytes of the target path.
+     */
+    public byte[] getSymbolicLinkTarget() {
+        if (!this.isSymbolicLink())
+            throw new IllegalStateException("iNode " + this.iNodeNumber + " is not a symbolic link");
+        if (this.num512ByteBlocks == 0 && this.totalFileSize < FAST_SYMLINK_MAX_LENGTH)
+            return this.readBlock(this.iNodeOffset + DIRECT_POINTERS_OFFSET, this.totalFileSize);
+        return this.getDataBlocksFromPointers();
+    }
+
+    /**
+     * Returns true if this iNode is a directory with a hashed (dir_index) tree of its entries on disk.
+     * @return True for a hash indexed directory, false otherwise.
+     */
+    public boolean isHashIndexed() {
+        return this.isDirectory() && (this.flags & INDEX_FLAG) != 0;
+    }
+
+    /**
+     * Retrieves the number of 512 byte blocks allocated to this iNode.
+     * @return The number of 512 byte blocks.
+     */
+    public long getNum512ByteBlocks() {
+        return this.num512ByteBlocks & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Retrieves the iNode flags.
+     * @return The flags.
+     */
+    public int getFlags() {
+        return this.flags;
+    }
+
+    /**
+     * Returns the in-memory index of names in this directory.
+     * @return The directory index, or null if it hasn't been built yet.
+     */
+    public DirectoryIndex getDirectoryIndex() {
+        return this.directoryIndex;
+    }
+
+    /**
+     * Keeps the in-memory index of names in this directory, so later lookups can reuse it.
+     * @param directoryIndex The directory index.
+     */
+    public void setDirectoryIndex(DirectoryIndex directoryIndex) {
+        this.directoryIndex = directoryIndex;
     }
 
     /**
@@ -386,7 +611,7 @@ public class INode extends DataBlock {
      * @return String representation of last access time.
      */
     public String getLastAccessTime() {
-        return this.lastAccessTime;
+        return TIME_FORMAT.format(Instant.ofEpochSecond(this.lastAccessTime));
     }
 
     /**
@@ -394,7 +619,7 @@ public class INode extends DataBlock {
      * @return String representation of creation time.
      */
     public String getCreationTime() {
-        return this.creationTime;
+        return TIME_FORMAT.format(Instant.ofEpochSecond(this.creationTime));
     }
 
     /**
@@ -402,7 +627,12 @@ public class INode extends DataBlock {
      * @return String representation of last modified time.
      */
     public String getLastModifiedTime() {
-        return this.lastModifiedTime;
+        String modified = this.lastModifiedString;
+        if (modified == null) {
+            modified = TIME_FORMAT.format(Instant.ofEpochSecond(this.lastModifiedTime));
+            this.lastModifiedString = modified;
+        }
+        return modified;
     }
 
     /**
@@ -410,6 +640,38 @@ public class INode extends DataBlock {
      * @return String representation of deleted time.
      */
     public String getDeletedTime() {
+        return (this.deletedTime == 0) ? "-" : DELETED_TIME_FORMAT.format(Instant.ofEpochSecond(this.deletedTime));
+    }
+
+    /**
+     * Retrieves the last access time in seconds since the epoch.
+     * @return The last access time.
+     */
+    public long getLastAccessEpochSeconds() {
+        return this.lastAccessTime;
+    }
+
+    /**
+     * Retrieves the creation time in seconds since the epoch.
+     * @return The creation time.
+     */
+    public long getCreationEpochSeconds() {
+        return this.creationTime;
+    }
+
+    /**
+     * Retrieves the last modified time in seconds since the epoch.
+     * @return The last modified time.
+     */
+    public long getLastModifiedEpochSeconds() {
+        return this.lastModifiedTime;
+    }
+
+    /**
+     * Retrieves the deleted time in seconds since the epoch.
+     * @return The deleted time, or 0 if the file hasn't been deleted.
+     */
+    public long getDeletedEpochSeconds() {
         return this.deletedTime;
     }
 
@@ -508,4 +770,22 @@ public class INode extends DataBlock {
     public int getiNodeTblPointer() {
         return this.iNodeTblPointer;
     }
+
+    /**
+     * Title: RunCopier
+     *
+     * This inner interface copies a run of contiguous bytes of file data from the volume.
+     *
+     * @author Harry Baines
+     */
+    private interface RunCopier {
+
+        /**
+         * Copies a run of bytes from the volume.
+         * @param startByte The byte offset of the run in the volume.
+         * @param dstOffset The offset in the destination array to copy to.
+         * @param length The number of bytes to copy.
+         */
+        void copy(long startByte, int dstOffset, int length);
+    }
 }
\ No newline at end of file
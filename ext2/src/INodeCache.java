@@ -0,0 +1,118 @@
+package ext2;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Name: INodeCache
+ *
+ * This class represents a bounded cache of parsed iNodes for a volume, keyed by iNode number.
+ * iNodes are never changed once parsed, so a cached iNode can be shared by every file and directory that refers to it.
+ * This means hot iNodes such as the root and common parent directories are only read and parsed once.
+ * When the cache is full the least recently used iNode is evicted.
+ * The cache is split into independently locked segments, so parallel walks and extractions rarely contend on it.
+ *
+ * @author Harry Baines
+ * @see INode
+ */
+public class INodeCache {
+
+    private StripedLruCache<Integer, INode> iNodes; /* Cached iNodes, keyed by iNode number */
+
+    private LongAdder hitCount;                     /* Number of lookups served from the cache */
+    private LongAdder missCount;                    /* Number of lookups not found in the cache */
+
+    /**
+     * Constructor to initialise an empty cache.
+     * @param maxSize The maximum number of iNodes to hold, or 0 to hold none so every lookup misses.
+     */
+    public INodeCache(int maxSize) {
+        this.iNodes = new StripedLruCache<Integer, INode>(maxSize);
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+    }
+
+    /**
+     * Looks up a cached iNode.
+     * @param iNodeNumber The iNode number.
+     * @return The cached iNode, or null if it isn't cached.
+     */
+    public INode get(int iNodeNumber) {
+        INode iNode = this.iNodes.get(iNodeNumber);
+        if (iNode != null)
+            this.hitCount.increment();
+        else
+            this.missCount.increment();
+        return iNode;
+    }
+
+    /**
+     * Adds a newly parsed iNode to the cache.
+     * @param iNode The iNode to cache.
+     */
+    public void put(INode iNode) {
+        this.iNodes.put(iNode.getINodeNumber(), iNode);
+    }
+
+    /**
+     * Removes every iNode from the cache.
+     */
+    public void clear() {
+        this.iNodes.clear();
+    }
+
+    /**
+     * Obtains the number of lookups served from the cache.
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    /**
+     * Obtains the number of lookups that were not found in the cache.
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+
+    /**
+     * Obtains the number of iNodes evicted from the cache.
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return this.iNodes.getEvictionCount();
+    }
+
+    /**
+     * Obtains the number of iNodes currently cached.
+     * @return The number of cached iNodes.
+     */
+    public int getSize() {
+        return this.iNodes.getSize();
+    }
+
+    /**
+     * Obtains the maximum number of iNodes the cache can hold.
+     * @return The cache capacity.
+     */
+    public int getMaxSize() {
+        return this.iNodes.getMaxSize();
+    }
+
+    /**
+     * Returns a String containing the cache statistics.
+     * @return A String of cache statistics.
+     */
+    public String getStatsString() {
+        long hits = this.getHitCount();
+        long requests = hits + this.getMissCount();
+        String stats = "";
+        stats += "Cached iNodes:     " + this.getSize() + " / " + this.getMaxSize() + "\n";
+        stats += "Hits:              " + hits + "\n";
+        stats += "Misses:            " + (requests - hits) + "\n";
+        stats += "Hit rate:          " + String.format("%.2f%%", (requests == 0) ? 0.0 : 100.0 * hits / requests) + "\n";
+        stats += "Evictions:         " + this.getEvictionCount() + "\n";
+        return stats;
+    }
+}
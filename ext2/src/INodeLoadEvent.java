@@ -0,0 +1,31 @@
+package ext2;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Name: INodeLoadEvent
+ *
+ * This class is the JDK Flight Recorder event emitted each time an iNode is read from its iNode table and parsed,
+ * i.e. each miss of the volume's iNode cache. An event object is allocated on every miss, but its fields are only filled in
+ * and it is only committed while a recording has the event enabled.
+ *
+ * @author Harry Baines
+ * @see Volume
+ * @see INode
+ */
+@Name("ext2.INodeLoad")
+@Label("iNode Load")
+@Category({ "ext2", "I/O" })
+@Description("An iNode read and parsed from its iNode table")
+final class INodeLoadEvent extends Event {
+
+    @Label("iNode")
+    int iNodeNumber;            /* The iNode number */
+
+    @Label("Block Group")
+    int group;                  /* The block group the iNode is in */
+}
@@ -0,0 +1,84 @@
+package ext2;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Name: INodeScanner
+ *
+ * This class sweeps every iNode table in a volume and passes each in-use iNode to a visitor.
+ * The block groups are split between the threads of a fork-join pool, and each group is swept by reading its iNode bitmap
+ * and visiting only the iNodes marked as in use, through a single flyweight view per group.
+ * The reserved iNodes at the start of the first group are marked as in use, so they are visited too.
+ *
+ * @author Harry Baines
+ * @see INodeVisitor
+ * @see INodeView
+ * @see BlockGroups
+ */
+public class INodeScanner {
+
+    private final Volume vol;           /* The volume to sweep */
+    private final ForkJoinPool pool;    /* The pool the groups are swept on */
+
+    /**
+     * Constructor to initialise a scanner which sweeps on the common fork-join pool.
+     * @param vol The volume to sweep.
+     */
+    public INodeScanner(Volume vol) {
+        this(vol, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor to initialise a scanner which sweeps on the given fork-join pool.
+     * @param vol The volume to sweep.
+     * @param pool The pool to sweep on.
+     */
+    public INodeScanner(Volume vol, ForkJoinPool pool) {
+        this.vol = vol;
+        this.pool = pool;
+    }
+
+    /**
+     * Sweeps every block group in parallel, passing each in-use iNode to the visitor.
+     * The order iNodes are visited in is not defined. Any exception thrown by the visitor stops the sweep and is rethrown.
+     *
+     * @param visitor The visitor to pass each iNode to.
+     * @return The number of iNodes visited.
+     */
+    public long scan(INodeVisitor visitor) {
+        return BlockGroups.forEachGroup(this.pool, this.vol.getGroupDescriptors().length, group -> this.scanGroup(group, visitor));
+    }
+
+    /**
+     * Sweeps a single block group, passing each in-use iNode to the visitor.
+     *
+     * @param group The block group number.
+     * @param visitor The visitor to pass each iNode to.
+     * @return The number of iNodes visited.
+     */
+    public long scanGroup(int group, INodeVisitor visitor) {
+
+        SuperBlock superBlock = this.vol.getSuperblock();
+        int iNodesPerGroup = superBlock.getiNodesPerGroup();
+        int firstINode = group * iNodesPerGroup + 1;
+
+        long[] bitmap = BlockGroups.readBitmap(this.vol, this.vol.getGroupDescriptors()[group].getiNodeBitmapPointer(), iNodesPerGroup);
+
+        INodeView view = new INodeView(this.vol);
+        long visited = 0;
+
+        // Visit the iNode for each bit set, a word at a time
+        for (int word = 0; word < bitmap.length; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                int index = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (index >= iNodesPerGroup)
+                    break;
+                visitor.visit(view.moveTo(firstINode + index));
+                visited++;
+            }
+        }
+        return visited;
+    }
+}
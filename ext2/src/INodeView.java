@@ -0,0 +1,214 @@
+package ext2;
+
+/**
+ * Name: INodeView
+ *
+ * This class is a flyweight view of an iNode in the volume.
+ * Unlike INode, the view only records the offset of the iNode in the volume and decodes each field when it is accessed,
+ * so no bytes are copied and nothing is parsed up front. A view can be moved to another iNode with moveTo(),
+ * which lets a sweep over every iNode in the iNode tables use a single view without any allocation per iNode.
+ * Views are not thread safe - each thread should use its own view.
+ *
+ * @author Harry Baines
+ * @see INode
+ */
+public class INodeView {
+
+    private final Volume vol;           /* The volume the iNode is located in */
+    private int iNodeNumber;            /* The number of the iNode currently viewed */
+    private long offsetInVol;           /* The offset, in bytes, of the iNode currently viewed in the volume */
+
+    /**
+     * Constructor to initialise a view of iNodes in the given volume. The view must be moved to an iNode before use.
+     * @param vol The volume the iNodes are located in.
+     */
+    public INodeView(Volume vol) {
+        this.vol = vol;
+    }
+
+    /**
+     * Constructor to initialise a view of the given iNode.
+     * @param vol The volume the iNode is located in.
+     * @param iNodeNumber The iNode number.
+     */
+    public INodeView(Volume vol, int iNodeNumber) {
+        this(vol);
+        this.moveTo(iNodeNumber);
+    }
+
+    /**
+     * Points this view at another iNode. The group of the iNode is found by division, so this takes constant time.
+     * @param iNodeNumber The iNode number.
+     * @return This view.
+     */
+    public INodeView moveTo(int iNodeNumber) {
+        this.iNodeNumber = iNodeNumber;
+        this.offsetInVol = this.vol.getINodeOffset(iNodeNumber);
+        return this;
+    }
+
+    /**
+     * Parses the iNode currently viewed, through the volume's iNode cache.
+     * @return The parsed iNode.
+     */
+    public INode toINode() {
+        return this.vol.getINode(this.iNodeNumber);
+    }
+
+    /**
+     * Returns true if the iNode currently viewed is in use, i.e. it has links and hasn't been deleted.
+     * @return True if the iNode is in use.
+     */
+    public boolean isInUse() {
+        return this.getNumHardLinks() > 0 && this.getDeletedEpochSeconds() == 0;
+    }
+
+    /**
+     * Returns true if the iNode currently viewed is a directory.
+     * @return True for a directory, false otherwise.
+     */
+    public boolean isDirectory() {
+        return (this.getFileMode() & INode.FILE_TYPE_MASK) == INode.DIRECTORY_TYPE;
+    }
+
+    /**
+     * Retrieves the file mode.
+     * @return The file mode.
+     */
+    public short getFileMode() {
+        return this.vol.readShort(this.offsetInVol + INode.FILE_MODE_OFFSET);
+    }
+
+    /**
+     * Retrieves the lower 16 bits of the user ID of the owner.
+     * @return The user ID.
+     */
+    public short getUserID() {
+        return this.vol.readShort(this.offsetInVol + INode.USER_ID_LOWER_OFFSET);
+    }
+
+    /**
+     * Retrieves the lower 16 bits of the group ID of the owner.
+     * @return The group ID.
+     */
+    public short getGroupID() {
+        return this.vol.readShort(this.offsetInVol + INode.GROUP_ID_LOWER_OFFSET);
+    }
+
+    /**
+     * Retrieves the total size of the file, in bytes.
+     * @return The file size.
+     */
+    public long getTotalFileSize() {
+        long lower = this.vol.readInt(this.offsetInVol + INode.FILE_SIZE_LOWER_OFFSET) & 0xFFFFFFFFL;
+        long upper = this.vol.readInt(this.offsetInVol + INode.FILE_SIZE_UPPER_OFFSET);
+        return upper << 32 | lower;
+    }
+
+    /**
+     * Retrieves the last access time in seconds since the epoch.
+     * @return The last access time.
+     */
+    public long getLastAccessEpochSeconds() {
+        return this.vol.readInt(this.offsetInVol + INode.LAST_ACCESS_OFFSET);
+    }
+
+    /**
+     * Retrieves the creation time in seconds since the epoch.
+     * @return The creation time.
+     */
+    public long getCreationEpochSeconds() {
+        return this.vol.readInt(this.offsetInVol + INode.CREATION_OFFSET);
+    }
+
+    /**
+     * Retrieves the last modified time in seconds since the epoch.
+     * @return The last modified time.
+     */
+    public long getLastModifiedEpochSeconds() {
+        return this.vol.readInt(this.offsetInVol + INode.LAST_MODIFIED_OFFSET);
+    }
+
+    /**
+     * Retrieves the deleted time in seconds since the epoch.
+     * @return The deleted time, or 0 if the file hasn't been deleted.
+     */
+    public long getDeletedEpochSeconds() {
+        return this.vol.readInt(this.offsetInVol + INode.DELETED_OFFSET);
+    }
+
+    /**
+     * Retrieves the number of hard links to the iNode.
+     * @return The number of hard links.
+     */
+    public int getNumHardLinks() {
+        return this.vol.readShort(this.offsetInVol + INode.HARD_LINKS_OFFSET) & 0xFFFF;
+    }
+
+    /**
+     * Retrieves the number of 512 byte blocks allocated to the iNode.
+     * @return The number of 512 byte blocks.
+     */
+    public long getNum512ByteBlocks() {
+        return this.vol.readInt(this.offsetInVol + INode.NUM_512_BLOCKS_OFFSET) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Retrieves the iNode flags.
+     * @return The flags.
+     */
+    public int getFlags() {
+        return this.vol.readInt(this.offsetInVol + INode.FLAGS_OFFSET);
+    }
+
+    /**
+     * Retrieves one of the direct block pointers.
+     * @param index The index of the direct pointer, from 0 to 11.
+     * @return The block pointer.
+     */
+    public int getDirectPointer(int index) {
+        if (index < 0 || index >= INode.NUM_DIRECT_POINTERS)
+            throw new IndexOutOfBoundsException("Direct pointer index out of range: " + index);
+        return this.vol.readInt(this.offsetInVol + INode.DIRECT_POINTERS_OFFSET + index * Integer.BYTES);
+    }
+
+    /**
+     * Retrieves the single indirect block pointer.
+     * @return The indirect pointer.
+     */
+    public int getIndirectPointer() {
+        return this.vol.readInt(this.offsetInVol + INode.INDIRECT_OFFSET);
+    }
+
+    /**
+     * Retrieves the double indirect block pointer.
+     * @return The double indirect pointer.
+     */
+    public int getDoubleIndirectPointer() {
+        return this.vol.readInt(this.offsetInVol + INode.DBL_INDIRECT_OFFSET);
+    }
+
+    /**
+     * Retrieves the triple indirect block pointer.
+     * @return The triple indirect pointer.
+     */
+    public int getTripleIndirectPointer() {
+        return this.vol.readInt(this.offsetInVol + INode.TRPL_INDIRECT_OFFSET);
+    }
+
+    /**
+     * Obtains the number of the iNode currently viewed.
+     * @return The iNode number.
+     */
+    public int getINodeNumber() {
+        return this.iNodeNumber;
+    }
+
+    /**
+     * Obtains the offset, in bytes, of the iNode currently viewed in the volume.
+     * @return The offset in the volume.
+     */
+    public long getOffsetInVol() {
+        return this.offsetInVol;
+    }
+}
@@ -0,0 +1,22 @@
+package ext2;
+
+/**
+ * Name: INodeVisitor
+ *
+ * This interface is implemented to receive each in-use iNode found by a sweep of the iNode tables.
+ * Visitors are called from many threads at once, so implementations must be thread safe.
+ * The view passed to visit() is reused for later iNodes once visit() returns, so it must not be kept -
+ * keep the iNode number, or call INodeView.toINode(), instead.
+ *
+ * @author Harry Baines
+ * @see INodeScanner
+ */
+@FunctionalInterface
+public interface INodeVisitor {
+
+    /**
+     * Called for each in-use iNode.
+     * @param iNode A view of the iNode, valid only for the duration of the call.
+     */
+    void visit(INodeView iNode);
+}
@@ -0,0 +1,844 @@
+package ext2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Name: ImageGenerator
+ *
+ * This class writes a synthetic ext2 image of a given geometry, for testing the reader at scale.
+ * Files and directories are laid out as they are added: each file's data and indirect blocks are allocated and written
+ * straight away, and directory entries are appended to the directory's last block, so only one small record per
+ * directory is held in memory and images with millions of files can be generated.
+ * Everything written - names, sizes, times and file contents - is derived from the seed, so the same calls with the
+ * same seed always produce the same image. File contents can be checked with fillBlock().
+ * The image uses revision 1 with the filetype, sparse_super and large_file features and no hashed directory indexes.
+ * The bitmaps, group descriptors and super blocks are written when the generator is closed.
+ * Usage: java ext2.ImageGenerator image-path [key=value ...] - run with no arguments for the keys.
+ *
+ * @author Harry Baines
+ * @see Volume
+ */
+public class ImageGenerator implements Closeable {
+
+    /* SUPER BLOCK CONSTANTS */
+    private static final int FREE_BLOCKS_OFFSET       = 12;     /* Offset, in bytes, for the number of free blocks */
+    private static final int FREE_INODES_OFFSET       = 16;     /* Offset, in bytes, for the number of free iNodes */
+    private static final int FRAG_SIZE_OFFSET         = 28;     /* Offset, in bytes, for the fragment size */
+    private static final int FRAGS_PER_GROUP_OFFSET   = 36;     /* Offset, in bytes, for fragments per block group */
+    private static final int MOUNT_TIME_OFFSET        = 44;     /* Offset, in bytes, for the last mount time */
+    private static final int WRITE_TIME_OFFSET        = 48;     /* Offset, in bytes, for the last write time */
+    private static final int MAX_MOUNT_COUNT_OFFSET   = 54;     /* Offset, in bytes, for the maximum mount count */
+    private static final int STATE_OFFSET             = 58;     /* Offset, in bytes, for the file system state */
+    private static final int ERRORS_OFFSET            = 60;     /* Offset, in bytes, for the behaviour on errors */
+    private static final int LAST_CHECK_OFFSET        = 64;     /* Offset, in bytes, for the last check time */
+    private static final int REV_LEVEL_OFFSET         = 76;     /* Offset, in bytes, for the revision level */
+    private static final int FIRST_INODE_OFFSET       = 84;     /* Offset, in bytes, for the first non-reserved iNode */
+    private static final int BLOCK_GROUP_NR_OFFSET    = 90;     /* Offset, in bytes, for the group a copy of the super block is in */
+    private static final int FEATURE_RO_COMPAT_OFFSET = 100;    /* Offset, in bytes, for the read-only compatible feature flags */
+    private static final int UUID_OFFSET              = 104;    /* Offset, in bytes, for the volume UUID */
+    private static final int MIN_EXTRA_ISIZE_OFFSET   = 348;    /* Offset, in bytes, for the minimum extra iNode size */
+    private static final int WANT_EXTRA_ISIZE_OFFSET  = 350;    /* Offset, in bytes, for the wanted extra iNode size */
+    private static final short MAGIC_NUMBER           = (short) 0xEF53;    /* The ext2 magic number */
+    private static final int FEATURE_SPARSE_SUPER     = 0x0001; /* Read-only compatible feature flag for super block copies in few groups */
+    private static final int FEATURE_LARGE_FILE       = 0x0002; /* Read-only compatible feature flag for files of 2GB and over */
+
+    /* INODE CONSTANTS */
+    private static final int EXTRA_ISIZE_OFFSET       = 128;    /* Offset, in bytes, for the size of the iNode fields past 128 bytes */
+    private static final int EXTRA_ISIZE              = 32;     /* The size of the iNode fields past 128 bytes, as written by mke2fs */
+    private static final int FIRST_INODE              = 11;     /* The first iNode which isn't reserved */
+    private static final int DIRECTORY_MODE           = INode.DIRECTORY_TYPE | 0755;       /* File mode of each directory */
+    private static final int FILE_MODE                = INode.REGULAR_FILE_TYPE | 0644;    /* File mode of each regular file */
+    private static final long BASE_TIME               = 1500000000L;                        /* The earliest time given to a file */
+    private static final int TIME_RANGE               = 200000000;                          /* The range of times given to files, in seconds */
+
+    private final FileChannel channel;          /* The image being written */
+    private final long seed;                    /* The seed everything written is derived from */
+    private final SplittableRandom random;      /* Chooses names, sizes and times */
+    private final int blockSize;                /* The size of each block, in bytes */
+    private final int numGroups;                /* The number of block groups */
+    private final int iNodeSize;                /* The size of each iNode, in bytes */
+    private final int iNodesPerGroup;           /* The number of iNodes in each block group */
+    private final int blocksPerGroup;           /* The number of blocks in each block group */
+    private final int firstDataBlock;           /* The block number of the first block in group 0 */
+    private final long totalBlocks;             /* The number of blocks in the image */
+    private final int pointersPerBlock;         /* The number of block pointers in an indirect block */
+    private final int gdtBlocks;                /* The number of blocks the group descriptors take */
+
+    private final BitSet usedBlocks = new BitSet();             /* Blocks in use */
+    private final BitSet usedINodes = new BitSet();             /* iNodes in use, by iNode number */
+    private final int[] dirsPerGroup;                           /* The number of directories in each group */
+    private final Map<String, DirState> dirs = new HashMap<String, DirState>();    /* Every directory, by path */
+    private final ByteBuffer scratch;                           /* Buffer for a single block, entry or iNode */
+    private final byte[] fillBuffer;                            /* Buffer the contents of a data block are generated into */
+
+    private boolean fillData = true;            /* True to write file contents, false to leave data blocks as zeros */
+    private int nextBlock;                      /* The block the next allocation starts searching from */
+    private int nextINode = FIRST_INODE;        /* The iNode the next allocation starts searching from */
+    private long nameCounter;                   /* Makes every generated name unique */
+    private long numFiles;                      /* Number of regular files written */
+    private long numDirs;                       /* Number of directories written */
+    private long dataBytes;                     /* Number of bytes of file data written, excluding holes */
+
+    /**
+     * Constructor to create an image of the given geometry, containing an empty root directory and /lost+found.
+     * Each block group has 8 * blockSize blocks.
+     *
+     * @param imagePath The path of the image to write - an existing file is replaced.
+     * @param seed The seed everything written is derived from.
+     * @param blockSize The size of each block, in bytes: 1024, 2048 or 4096.
+     * @param numGroups The number of block groups.
+     * @param iNodeSize The size of each iNode, in bytes: a power of two from 128 up to the block size.
+     * @param iNodesPerGroup The number of iNodes in each group: a multiple of 8 filling whole blocks, at most 8 * blockSize.
+     * @throws IOException if the image couldn't be created.
+     * @throws IllegalArgumentException if the geometry isn't valid.
+     */
+    public ImageGenerator(String imagePath, long seed, int blockSize, int numGroups, int iNodeSize, int iNodesPerGroup) throws IOException {
+
+        if (blockSize != 1024 && blockSize != 2048 && blockSize != 4096)
+            throw new IllegalArgumentException("Block size must be 1024, 2048 or 4096: " + blockSize);
+        if (iNodeSize < 128 || iNodeSize > blockSize || Integer.bitCount(iNodeSize) != 1)
+            throw new IllegalArgumentException("iNode size must be a power of two from 128 to the block size: " + iNodeSize);
+        if (iNodesPerGroup <= 0 || iNodesPerGroup % 8 != 0 || iNodesPerGroup > 8 * blockSize || (long) iNodesPerGroup * iNodeSize % blockSize != 0)
+            throw new IllegalArgumentException("iNodes per group must be a multiple of 8 filling whole blocks, at most " + 8 * blockSize + ": " + iNodesPerGroup);
+        if (numGroups <= 0)
+            throw new IllegalArgumentException("There must be at least one block group: " + numGroups);
+
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        this.blockSize = blockSize;
+        this.numGroups = numGroups;
+        this.iNodeSize = iNodeSize;
+        this.iNodesPerGroup = iNodesPerGroup;
+        this.blocksPerGroup = 8 * blockSize;
+        this.firstDataBlock = (blockSize == 1024) ? 1 : 0;
+        this.totalBlocks = this.firstDataBlock + (long) numGroups * this.blocksPerGroup;
+        this.pointersPerBlock = blockSize / Integer.BYTES;
+        this.gdtBlocks = (numGroups * GroupDescriptor.GROUP_DESCRIPTOR_SIZE + blockSize - 1) / blockSize;
+        this.dirsPerGroup = new int[numGroups];
+        this.scratch = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.fillBuffer = new byte[blockSize];
+
+        if (this.totalBlocks > Integer.MAX_VALUE || (long) numGroups * iNodesPerGroup > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many block groups - at most 2^31 blocks and iNodes are supported: " + numGroups);
+        if (this.getGroupOverhead(0) >= this.blocksPerGroup)
+            throw new IllegalArgumentException("The group metadata doesn't fit in a block group");
+
+        // The image is sized up front, so blocks which are never written stay sparse on the host
+        RandomAccessFile file = new RandomAccessFile(imagePath, "rw");
+        file.setLength(0);
+        file.setLength(this.totalBlocks * blockSize);
+        this.channel = file.getChannel();
+
+        // Reserve the blocks before the first group and the metadata at the start of each group
+        this.usedBlocks.set(0, this.firstDataBlock);
+        for (int group = 0; group < numGroups; group++) {
+            int groupStart = (int) this.getGroupStart(group);
+            this.usedBlocks.set(groupStart, groupStart + this.getGroupOverhead(group));
+        }
+        this.usedINodes.set(1, FIRST_INODE);
+
+        // The root directory is its own parent
+        DirState root = new DirState(Volume.ROOT_INODE_NUMBER);
+        this.dirs.put("", root);
+        this.dirsPerGroup[0]++;
+        this.appendEntry(root, ".", Volume.ROOT_INODE_NUMBER, DirectoryEntry.TYPE_DIR);
+        this.appendEntry(root, "..", Volume.ROOT_INODE_NUMBER, DirectoryEntry.TYPE_DIR);
+        this.addDirectory("/lost+found");
+    }
+
+    /**
+     * Main method to generate an image.
+     * @param args The image path followed by key=value settings.
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 1) {
+            System.out.println("Usage: java ext2.ImageGenerator image-path [key=value ...]");
+            System.out.println("  seed=42 blockSize=4096 groups=64 iNodeSize=256 iNodesPerGroup=8192    geometry and seed");
+            System.out.println("  files=100000 dirs=5000 maxFileSize=65536                               random tree under /tree");
+            System.out.println("  wide=100000                                                            entries in /wide");
+            System.out.println("  deep=64                                                                depth of /deep/d1/.../file");
+            System.out.println("  sparse=4                                                               sparse files in /sparse");
+            System.out.println("  hugeMB=0                                                               size of /huge, in MB");
+            System.out.println("  fill=true                                                              false to leave file data as zeros");
+            return;
+        }
+
+        Map<String, String> settings = new HashMap<String, String>();
+        for (int i = 1; i < args.length; i++) {
+            String[] setting = args[i].split("=", 2);
+            if (setting.length != 2) {
+                System.out.println("Settings must be given as key=value: " + args[i]);
+                return;
+            }
+            settings.put(setting[0], setting[1]);
+        }
+
+        // The image is only complete once the generator is closed, so the time taken and stats are printed after that
+        long startTime = System.nanoTime();
+        ImageGenerator generated;
+        try (ImageGenerator generator = new ImageGenerator(args[0], Long.parseLong(settings.getOrDefault("seed", "42")),
+                Integer.parseInt(settings.getOrDefault("blockSize", "4096")), Integer.parseInt(settings.getOrDefault("groups", "64")),
+                Integer.parseInt(settings.getOrDefault("iNodeSize", "256")), Integer.parseInt(settings.getOrDefault("iNodesPerGroup", "8192")))) {
+
+            generated = generator;
+            generator.setFillData(Boolean.parseBoolean(settings.getOrDefault("fill", "true")));
+            generator.addRandomTree("/tree", Integer.parseInt(settings.getOrDefault("dirs", "5000")),
+                Integer.parseInt(settings.getOrDefault("files", "100000")), Long.parseLong(settings.getOrDefault("maxFileSize", "65536")));
+            generator.addWideDirectory("/wide", Integer.parseInt(settings.getOrDefault("wide", "100000")));
+            generator.addDeepPath("/deep", Integer.parseInt(settings.getOrDefault("deep", "64")));
+            int numSparse = Integer.parseInt(settings.getOrDefault("sparse", "4"));
+            for (int i = 0; i < numSparse; i++)
+                generator.addSparseFile("/sparse/file" + i, (64L << 20) << i, 16, 8);
+            long hugeMB = Long.parseLong(settings.getOrDefault("hugeMB", "0"));
+            if (hugeMB > 0)
+                generator.addFile("/huge", hugeMB << 20);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Couldn't generate the image: " + e.getMessage());
+            return;
+        }
+        System.out.println(generated.getStatsString(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Sets whether file contents are written. Without contents data blocks are still allocated but left as zeros,
+     * so the image stays sparse on the host and large files are generated quickly.
+     * @param fillData True to write file contents, false to leave data blocks as zeros.
+     */
+    public void setFillData(boolean fillData) {
+        this.fillData = fillData;
+    }
+
+    /**
+     * Adds a directory, and any missing parent directories.
+     * @param path The path of the directory.
+     * @throws IOException if the image couldn't be written.
+     */
+    public void addDirectory(String path) throws IOException {
+        this.getDirectory(normalise(path));
+    }
+
+    /**
+     * Adds a regular file with every block allocated. Parent directories are added if missing.
+     *
+     * @param path The path of the file.
+     * @param size The size of the file, in bytes.
+     * @throws IOException if the image couldn't be written.
+     */
+    public void addFile(String path, long size) throws IOException {
+        long numBlocks = (size + this.blockSize - 1) / this.blockSize;
+        this.addFile(normalise(path), size, new long[] { 0 }, new long[] { numBlocks });
+    }
+
+    /**
+     * Adds a sparse regular file: a number of extents of data are placed at random in the file, and the rest is holes.
+     * Parent directories are added if missing.
+     *
+     * @param path The path of the file.
+     * @param size The size of the file, in bytes.
+     * @param numExtents The number of extents of data, some of which may join up.
+     * @param extentBlocks The length of each extent, in blocks.
+     * @throws IOException if the image couldn't be written.
+     */
+    public void addSparseFile(String path, long size, int numExtents, int extentBlocks) throws IOException {
+
+        long numBlocks = (size + this.blockSize - 1) / this.blockSize;
+        long[] starts = new long[numExtents];
+        for (int i = 0; i < numExtents; i++)
+            starts[i] = this.random.nextLong(Math.max(1, numBlocks - extentBlocks + 1));
+        Arrays.sort(starts);
+
+        // Merge overlapping extents
+        long[] extentStarts = new long[numExtents];
+        long[] extentEnds = new long[numExtents];
+        int count = 0;
+        for (long start : starts) {
+            long end = Math.min(start + extentBlocks, numBlocks);
+            if (count > 0 && start <= extentEnds[count - 1])
+                extentEnds[count - 1] = Math.max(extentEnds[count - 1], end);
+            else if (start < end) {
+                extentStarts[count] = start;
+                extentEnds[count++] = end;
+            }
+        }
+        this.addFile(normalise(path), size, Arrays.copyOf(extentStarts, count), Arrays.copyOf(extentEnds, count));
+    }
+
+    /**
+     * Adds a tree of directories and files with random names below a directory.
+     * Each directory is placed in a random directory already in the tree, and each file in a random directory.
+     * File sizes are spread evenly over orders of magnitude, so most files are small.
+     *
+     * @param root The path of the directory to add the tree below.
+     * @param numDirs The number of directories to add.
+     * @param numFiles The number of files to add.
+     * @param maxFileSize The largest file size, in bytes.
+     * @throws IOException if the image couldn't be written.
+     */
+    public void addRandomTree(String root, int numDirs, int numFiles, long maxFileSize) throws IOException {
+
+        List<String> treeDirs = new ArrayList<String>();
+        treeDirs.add(normalise(root));
+        this.getDirectory(treeDirs.get(0));
+
+        for (int i = 0; i < numDirs; i++) {
+            String path = treeDirs.get(this.random.nextInt(treeDirs.size())) + "/" + this.nextName("d");
+            this.getDirectory(path);
+            treeDirs.add(path);
+        }
+        for (int i = 0; i < numFiles; i++) {
+            long size = (long) Math.pow(maxFileSize + 1, this.random.nextDouble()) - 1;
+            this.addFile(treeDirs.get(this.random.nextInt(treeDirs.size())) + "/" + this.nextName("f"), size);
+        }
+    }
+
+    /**
+     * Adds a directory containing the given number of empty files.
+     * @param path The path of the directory.
+     * @param numEntries The number of files in the directory.
+     * @throws IOException if the image couldn't be written.
+     */
+    public void addWideDirectory(String path, int numEntries) throws IOException {
+        String dirPath = normalise(path);
+        for (int i = 0; i < numEntries; i++)
+            this.addFile(dirPath + "/" + this.nextName("e"), 0);
+    }
+
+    /**
+     * Adds a chain of nested directories with a small file at the bottom, e.g. path/d1/d2/d3/file for a depth of 3.
+     * @param path The path of the directory to add the chain below.
+     * @param depth The number of nested directories.
+     * @throws IOException if the image couldn't be written.
+     */
+    public void addDeepPath(String path, int depth) throws IOException {
+        StringBuilder deepPath = new StringBuilder(normalise(path));
+        for (int level = 1; level <= depth; level++)
+            deepPath.append("/d").append(level);
+        this.addFile(deepPath.append("/file").toString(), this.blockSize + 1);
+    }
+
+    /**
+     * Generates the contents of a block of a file, as written by the generator.
+     *
+     * @param seed The seed the image was generated from.
+     * @param iNodeNumber The iNode number of the file.
+     * @param logicalBlock The block number in the file.
+     * @param dst The array to generate the block into - its whole length is filled.
+     */
+    public static void fillBlock(long seed, int iNodeNumber, long logicalBlock, byte[] dst) {
+        long state = BlockCache.mix(seed ^ BlockCache.mix(((long) iNodeNumber << 40) ^ logicalBlock));
+        for (int i = 0; i < dst.length; i += Long.BYTES) {
+            state = state * 6364136223846793005L + 1442695040888963407L;
+            long word = BlockCache.mix(state);
+            for (int b = 0; b < Long.BYTES && i + b < dst.length; b++)
+                dst[i + b] = (byte) (word >>> (8 * b));
+        }
+    }
+
+    /**
+     * Writes the directories, bitmaps, group descriptors and super blocks, and closes the image.
+     * Nothing can be added once the image is closed.
+     * @throws IOException if the image couldn't be written.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (!this.channel.isOpen())
+            return;
+
+        try {
+            for (DirState dir : this.dirs.values())
+                this.writeDirectoryINode(dir);
+            this.writeGroupMetadata();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Returns a String summarising what was generated and how quickly.
+     * @param elapsedNanos The time taken, in nanoseconds.
+     * @return The summary.
+     */
+    public String getStatsString(long elapsedNanos) {
+        String stats = "";
+        stats += "Blocks used / total:   " + this.usedBlocks.cardinality() + " / " + this.totalBlocks + "\n";
+        stats += "iNodes used / total:   " + this.usedINodes.cardinality() + " / " + (long) this.numGroups * this.iNodesPerGroup + "\n";
+        stats += "Directories:           " + this.numDirs + "\n";
+        stats += "Regular files:         " + this.numFiles + " (" + String.format("%.2f", this.dataBytes / (1024.0 * 1024.0)) + " MB of data)\n";
+        stats += "Time taken (s):        " + String.format("%.2f", elapsedNanos / 1e9) + "\n";
+        return stats;
+    }
+
+    /**
+     * Adds a regular file whose data is in the given extents of blocks.
+     *
+     * @param path The normalised path of the file.
+     * @param size The size of the file, in bytes.
+     * @param extentStarts The first block of each extent of data, in order.
+     * @param extentEnds The block after the last block of each extent of data.
+     * @throws IOException if the image couldn't be written.
+     */
+    private void addFile(String path, long size, long[] extentStarts, long[] extentEnds) throws IOException {
+
+        long maxBlocks = INode.NUM_DIRECT_POINTERS + this.pointersPerBlock + (long) this.pointersPerBlock * this.pointersPerBlock
+            + (long) this.pointersPerBlock * this.pointersPerBlock * this.pointersPerBlock;
+        if ((size + this.blockSize - 1) / this.blockSize > maxBlocks)
+            throw new IllegalArgumentException("File too large for triple indirect block pointers: " + path);
+
+        int slash = path.lastIndexOf('/');
+        DirState parent = this.getDirectory(path.substring(0, slash));
+        int iNodeNumber = this.allocateINode();
+
+        // Allocate the data blocks in order, each indirect block just before the blocks it points to
+        BlockSource source = new BlockSource() {
+            @Override
+            public boolean hasData(long from, long to) {
+                int extent = Arrays.binarySearch(extentEnds, from + 1);
+                extent = (extent < 0) ? -extent - 1 : extent;
+                return extent < extentStarts.length && extentStarts[extent] < to;
+            }
+
+            @Override
+            public int getBlock(long logicalBlock) throws IOException {
+                int block = allocateBlock();
+                if (fillData) {
+                    fillBlock(seed, iNodeNumber, logicalBlock, fillBuffer);
+                    channel.write(ByteBuffer.wrap(fillBuffer), (long) block * blockSize);
+                }
+                return block;
+            }
+        };
+
+        long time = BASE_TIME + this.random.nextInt(TIME_RANGE);
+        this.writeINode(iNodeNumber, FILE_MODE, size, time, 1, source);
+        this.appendEntry(parent, path.substring(slash + 1), iNodeNumber, DirectoryEntry.TYPE_FILE);
+
+        for (int extent = 0; extent < extentStarts.length; extent++)
+            this.dataBytes += (extentEnds[extent] - extentStarts[extent]) * this.blockSize;
+        this.numFiles++;
+    }
+
+    /**
+     * Finds a directory, adding it and any missing parents if needed.
+     * @param path The normalised path of the directory, "" for the root.
+     * @return The directory.
+     * @throws IOException if the image couldn't be written.
+     */
+    private DirState getDirectory(String path) throws IOException {
+
+        DirState dir = this.dirs.get(path);
+        if (dir != null)
+            return dir;
+
+        int slash = path.lastIndexOf('/');
+        DirState parent = this.getDirectory(path.substring(0, slash));
+        dir = new DirState(this.allocateINode());
+        this.dirs.put(path, dir);
+        this.dirsPerGroup[(dir.iNodeNumber - 1) / this.iNodesPerGroup]++;
+        this.numDirs++;
+
+        this.appendEntry(dir, ".", dir.iNodeNumber, DirectoryEntry.TYPE_DIR);
+        this.appendEntry(dir, "..", parent.iNodeNumber, DirectoryEntry.TYPE_DIR);
+        this.appendEntry(parent, path.substring(slash + 1), dir.iNodeNumber, DirectoryEntry.TYPE_DIR);
+        parent.numLinks++;
+        return dir;
+    }
+
+    /**
+     * Appends an entry to a directory. The new entry's record runs to the end of the block,
+     * and the record of the entry before it is shortened to its name.
+     *
+     * @param dir The directory.
+     * @param name The name of the entry.
+     * @param iNodeNumber The iNode number the entry refers to.
+     * @param fileType The file type of the entry.
+     * @throws IOException if the image couldn't be written.
+     */
+    private void appendEntry(DirState dir, String name, int iNodeNumber, int fileType) throws IOException {
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length == 0 || nameBytes.length > 255 || name.indexOf('/') >= 0)
+            throw new IllegalArgumentException("Invalid name in a directory: \"" + name + "\"");
+        int entryLength = (Directory.FILENAME_OFFSET + nameBytes.length + 3) & ~3;
+
+        // Start a new block if the entry doesn't fit in the last one
+        if (dir.numBlocks == 0 || dir.blockUsed + entryLength > this.blockSize) {
+            if (dir.numBlocks == dir.blocks.length)
+                dir.blocks = Arrays.copyOf(dir.blocks, dir.blocks.length * 2);
+            dir.blocks[dir.numBlocks++] = this.allocateBlock();
+            dir.blockUsed = 0;
+        }
+        else {
+            this.scratch.clear();
+            this.scratch.putShort(0, (short) dir.lastEntryLength).limit(Short.BYTES);
+            this.channel.write(this.scratch, dir.lastEntryOffset + Directory.INODE_LENGTH);
+        }
+
+        long entryOffset = (long) dir.blocks[dir.numBlocks - 1] * this.blockSize + dir.blockUsed;
+        this.scratch.clear();
+        this.scratch.putInt(iNodeNumber);
+        this.scratch.putShort((short) (this.blockSize - dir.blockUsed));
+        this.scratch.put((byte) nameBytes.length);
+        this.scratch.put((byte) fileType);
+        this.scratch.put(nameBytes);
+        this.scratch.flip();
+        this.channel.write(this.scratch, entryOffset);
+
+        dir.lastEntryOffset = entryOffset;
+        dir.lastEntryLength = entryLength;
+        dir.blockUsed += entryLength;
+    }
+
+    /**
+     * Writes the iNode of a directory, with block pointers to every block of its entries.
+     * @param dir The directory.
+     * @throws IOException if the image couldn't be written.
+     */
+    private void writeDirectoryINode(DirState dir) throws IOException {
+        BlockSource source = new BlockSource() {
+            @Override
+            public boolean hasData(long from, long to) {
+                return from < dir.numBlocks;
+            }
+
+            @Override
+            public int getBlock(long logicalBlock) {
+                return dir.blocks[(int) logicalBlock];
+            }
+        };
+        this.writeINode(dir.iNodeNumber, DIRECTORY_MODE, (long) dir.numBlocks * this.blockSize, dir.time, dir.numLinks, source);
+    }
+
+    /**
+     * Builds the block pointers of an iNode and writes it to its iNode table.
+     *
+     * @param iNodeNumber The iNode number.
+     * @param mode The file mode.
+     * @param size The size of the file, in bytes.
+     * @param time The access, creation and modified time, in seconds since the epoch.
+     * @param numLinks The number of hard links.
+     * @param source The data blocks of the file.
+     * @throws IOException if the image couldn't be written.
+     */
+    private void writeINode(int iNodeNumber, int mode, long size, long time, int numLinks, BlockSource source) throws IOException {
+
+        // Each tier of pointers covers the blocks after the previous tier
+        long[] counted = new long[1];
+        int[] pointers = new int[INode.NUM_DIRECT_POINTERS + 3];
+        for (int i = 0; i < INode.NUM_DIRECT_POINTERS; i++)
+            pointers[i] = this.buildPointer(0, i, source, counted);
+        long tierStart = INode.NUM_DIRECT_POINTERS;
+        long tierSpan = this.pointersPerBlock;
+        for (int level = 1; level <= 3; level++) {
+            pointers[INode.NUM_DIRECT_POINTERS + level - 1] = this.buildPointer(level, tierStart, source, counted);
+            tierStart += tierSpan;
+            tierSpan *= this.pointersPerBlock;
+        }
+
+        ByteBuffer iNodeBuffer = ByteBuffer.allocate(this.iNodeSize).order(ByteOrder.LITTLE_ENDIAN);
+        iNodeBuffer.putShort(INode.FILE_MODE_OFFSET, (short) mode);
+        iNodeBuffer.putInt(INode.FILE_SIZE_LOWER_OFFSET, (int) size);
+        iNodeBuffer.putInt(INode.LAST_ACCESS_OFFSET, (int) time);
+        iNodeBuffer.putInt(INode.CREATION_OFFSET, (int) time);
+        iNodeBuffer.putInt(INode.LAST_MODIFIED_OFFSET, (int) time);
+        iNodeBuffer.putShort(INode.HARD_LINKS_OFFSET, (short) numLinks);
+        iNodeBuffer.putInt(INode.NUM_512_BLOCKS_OFFSET, (int) (counted[0] * (this.blockSize / 512)));
+        for (int i = 0; i < pointers.length; i++)
+            iNodeBuffer.putInt(INode.DIRECT_POINTERS_OFFSET + i * Integer.BYTES, pointers[i]);
+        iNodeBuffer.putInt(INode.FILE_SIZE_UPPER_OFFSET, (int) (size >>> 32));
+        if (this.iNodeSize > EXTRA_ISIZE_OFFSET)
+            iNodeBuffer.putShort(EXTRA_ISIZE_OFFSET, (short) EXTRA_ISIZE);
+
+        int group = (iNodeNumber - 1) / this.iNodesPerGroup;
+        int index = (iNodeNumber - 1) % this.iNodesPerGroup;
+        long tableStart = (this.getGroupStart(group) + this.getGroupOverhead(group) - this.getINodeTableBlocks()) * this.blockSize;
+        this.channel.write(iNodeBuffer, tableStart + (long) index * this.iNodeSize);
+    }
+
+    /**
+     * Builds the pointer to a data block or a block of pointers, writing any blocks of pointers needed.
+     *
+     * @param level 0 for a data block, 1 for a single indirect block, 2 for double and 3 for triple.
+     * @param firstBlock The first block in the file covered by the pointer.
+     * @param source The data blocks of the file.
+     * @param counted Holds the number of blocks, data and pointers, allocated to the file so far.
+     * @return The block number, or 0 if no data is covered by the pointer.
+     * @throws IOException if the image couldn't be written.
+     */
+    private int buildPointer(int level, long firstBlock, BlockSource source, long[] counted) throws IOException {
+
+        long span = 1;
+        for (int i = 0; i < level; i++)
+            span *= this.pointersPerBlock;
+        if (!source.hasData(firstBlock, firstBlock + span))
+            return 0;
+
+        counted[0]++;
+        if (level == 0)
+            return source.getBlock(firstBlock);
+
+        int block = this.allocateBlock();
+        ByteBuffer pointerBuffer = ByteBuffer.allocate(this.blockSize).order(ByteOrder.LITTLE_ENDIAN);
+        long childSpan = span / this.pointersPerBlock;
+        for (int i = 0; i < this.pointersPerBlock; i++)
+            pointerBuffer.putInt(i * Integer.BYTES, this.buildPointer(level - 1, firstBlock + i * childSpan, source, counted));
+        this.channel.write(pointerBuffer, (long) block * this.blockSize);
+        return block;
+    }
+
+    /**
+     * Writes the block and iNode bitmaps, the group descriptors and the super block and its copies.
+     * @throws IOException if the image couldn't be written.
+     */
+    private void writeGroupMetadata() throws IOException {
+
+        ByteBuffer descriptors = ByteBuffer.allocate(this.gdtBlocks * this.blockSize).order(ByteOrder.LITTLE_ENDIAN);
+        long freeBlocks = 0;
+        long freeINodes = 0;
+
+        for (int group = 0; group < this.numGroups; group++) {
+
+            long groupStart = this.getGroupStart(group);
+            int blockBitmap = (int) (groupStart + this.getGroupOverhead(group) - this.getINodeTableBlocks() - 2);
+            int iNodeBitmap = blockBitmap + 1;
+            int firstINode = group * this.iNodesPerGroup + 1;
+
+            // Bits past the end of the group are set, as padding
+            BitSet blockBits = this.usedBlocks.get((int) groupStart, (int) groupStart + this.blocksPerGroup);
+            BitSet iNodeBits = this.usedINodes.get(firstINode, firstINode + this.iNodesPerGroup);
+            iNodeBits.set(this.iNodesPerGroup, 8 * this.blockSize);
+            this.writeBitmap(blockBitmap, blockBits);
+            this.writeBitmap(iNodeBitmap, iNodeBits);
+
+            int groupFreeBlocks = this.blocksPerGroup - blockBits.cardinality();
+            int groupFreeINodes = this.iNodesPerGroup - (iNodeBits.cardinality() - (8 * this.blockSize - this.iNodesPerGroup));
+            freeBlocks += groupFreeBlocks;
+            freeINodes += groupFreeINodes;
+
+            int offset = group * GroupDescriptor.GROUP_DESCRIPTOR_SIZE;
+            descriptors.putInt(offset + GroupDescriptor.BLOCK_BITMAP_POINTER_OFFSET, blockBitmap);
+            descriptors.putInt(offset + GroupDescriptor.INODE_BITMAP_POINTER_OFFSET, iNodeBitmap);
+            descriptors.putInt(offset + GroupDescriptor.INODE_TBL_POINTER_OFFSET, iNodeBitmap + 1);
+            descriptors.putShort(offset + GroupDescriptor.FREE_BLOCK_COUNT_OFFSET, (short) groupFreeBlocks);
+            descriptors.putShort(offset + GroupDescriptor.FREE_INODE_COUNT_OFFSET, (short) groupFreeINodes);
+            descriptors.putShort(offset + GroupDescriptor.USED_DIRS_COUNT_OFFSET, (short) this.dirsPerGroup[group]);
+        }
+
+        ByteBuffer superBlock = ByteBuffer.allocate(SuperBlock.SUPERBLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long time = BASE_TIME + TIME_RANGE;
+        superBlock.putInt(SuperBlock.NUM_INODE_OFFSET, this.numGroups * this.iNodesPerGroup);
+        superBlock.putInt(SuperBlock.NUM_BLOCKS_OFFSET, (int) this.totalBlocks);
+        superBlock.putInt(FREE_BLOCKS_OFFSET, (int) freeBlocks);
+        superBlock.putInt(FREE_INODES_OFFSET, (int) freeINodes);
+        superBlock.putInt(SuperBlock.FIRST_DATA_BLOCK_OFFSET, this.firstDataBlock);
+        superBlock.putInt(SuperBlock.BLOCK_SIZE_OFFSET, Integer.numberOfTrailingZeros(this.blockSize / 1024));
+        superBlock.putInt(FRAG_SIZE_OFFSET, Integer.numberOfTrailingZeros(this.blockSize / 1024));
+        superBlock.putInt(SuperBlock.BLOCKS_PER_GROUP_OFFSET, this.blocksPerGroup);
+        superBlock.putInt(FRAGS_PER_GROUP_OFFSET, this.blocksPerGroup);
+        superBlock.putInt(SuperBlock.INODES_PER_GROUP_OFFSET, this.iNodesPerGroup);
+        superBlock.putInt(MOUNT_TIME_OFFSET, 0);
+        superBlock.putInt(WRITE_TIME_OFFSET, (int) time);
+        superBlock.putShort(MAX_MOUNT_COUNT_OFFSET, (short) -1);
+        superBlock.putShort(SuperBlock.MAGIC_NUM_OFFSET, MAGIC_NUMBER);
+        superBlock.putShort(STATE_OFFSET, (short) 1);
+        superBlock.putShort(ERRORS_OFFSET, (short) 1);
+        superBlock.putInt(LAST_CHECK_OFFSET, (int) time);
+        superBlock.putInt(REV_LEVEL_OFFSET, 1);
+        superBlock.putInt(FIRST_INODE_OFFSET, FIRST_INODE);
+        superBlock.putShort(SuperBlock.INODE_SIZE_OFFSET, (short) this.iNodeSize);
+        superBlock.putInt(SuperBlock.FEATURE_INCOMPAT_OFFSET, SuperBlock.FEATURE_FILETYPE);
+        superBlock.putInt(FEATURE_RO_COMPAT_OFFSET, FEATURE_SPARSE_SUPER | FEATURE_LARGE_FILE);
+        superBlock.putLong(UUID_OFFSET, BlockCache.mix(this.seed));
+        superBlock.putLong(UUID_OFFSET + Long.BYTES, BlockCache.mix(~this.seed));
+        superBlock.put(SuperBlock.VOLUME_LBL_OFFSET, "synthetic".getBytes(StandardCharsets.US_ASCII));
+        if (this.iNodeSize > EXTRA_ISIZE_OFFSET) {
+            superBlock.putShort(MIN_EXTRA_ISIZE_OFFSET, (short) EXTRA_ISIZE);
+            superBlock.putShort(WANT_EXTRA_ISIZE_OFFSET, (short) EXTRA_ISIZE);
+        }
+
+        // The primary super block is always 1024 bytes into the volume, and each copy starts its group
+        for (int group = 0; group < this.numGroups; group++) {
+            if (!hasSuperBlock(group))
+                continue;
+            long groupStart = this.getGroupStart(group);
+            long superBlockOffset = (group == 0) ? SuperBlock.SUPERBLOCK_OFFSET : groupStart * this.blockSize;
+            superBlock.putShort(BLOCK_GROUP_NR_OFFSET, (short) group);
+            this.channel.write(superBlock.clear(), superBlockOffset);
+            this.channel.write(descriptors.clear(), (groupStart + 1) * this.blockSize);
+        }
+    }
+
+    /**
+     * Writes a bitmap to a block.
+     * @param block The block number.
+     * @param bits The bits to write.
+     * @throws IOException if the image couldn't be written.
+     */
+    private void writeBitmap(int block, BitSet bits) throws IOException {
+        byte[] bytes = Arrays.copyOf(bits.toByteArray(), this.blockSize);
+        this.channel.write(ByteBuffer.wrap(bytes), (long) block * this.blockSize);
+    }
+
+    /**
+     * Allocates the next free block.
+     * @return The block number.
+     * @throws IllegalStateException if the image is full.
+     */
+    private int allocateBlock() {
+        int block = this.usedBlocks.nextClearBit(this.nextBlock);
+        if (block >= this.totalBlocks)
+            throw new IllegalStateException("The image is full - add more block groups");
+        this.usedBlocks.set(block);
+        this.nextBlock = block + 1;
+        return block;
+    }
+
+    /**
+     * Allocates the next free iNode.
+     * @return The iNode number.
+     * @throws IllegalStateException if every iNode is in use.
+     */
+    private int allocateINode() {
+        int iNodeNumber = this.usedINodes.nextClearBit(this.nextINode);
+        if (iNodeNumber > (long) this.numGroups * this.iNodesPerGroup)
+            throw new IllegalStateException("Every iNode is in use - add more iNodes per group or block groups");
+        this.usedINodes.set(iNodeNumber);
+        this.nextINode = iNodeNumber + 1;
+        return iNodeNumber;
+    }
+
+    /**
+     * Generates a unique name with a random suffix.
+     * @param prefix The start of the name.
+     * @return The name.
+     */
+    private String nextName(String prefix) {
+        StringBuilder name = new StringBuilder(prefix).append(this.nameCounter++).append('-');
+        int length = 1 + this.random.nextInt(12);
+        for (int i = 0; i < length; i++)
+            name.append((char) ('a' + this.random.nextInt(26)));
+        return name.toString();
+    }
+
+    /**
+     * Obtains the first block of a block group.
+     * @param group The block group number.
+     * @return The block number.
+     */
+    private long getGroupStart(int group) {
+        return this.firstDataBlock + (long) group * this.blocksPerGroup;
+    }
+
+    /**
+     * Obtains the number of metadata blocks at the start of a group: the super block and group descriptors if the group
+     * has a copy of them, then the block bitmap, the iNode bitmap and the iNode table.
+     * @param group The block group number.
+     * @return The number of blocks.
+     */
+    private int getGroupOverhead(int group) {
+        return (hasSuperBlock(group) ? 1 + this.gdtBlocks : 0) + 2 + this.getINodeTableBlocks();
+    }
+
+    /**
+     * Obtains the number of blocks in each iNode table.
+     * @return The number of blocks.
+     */
+    private int getINodeTableBlocks() {
+        return (int) ((long) this.iNodesPerGroup * this.iNodeSize / this.blockSize);
+    }
+
+    /**
+     * Returns true if a group holds a copy of the super block with sparse_super: groups 0, 1 and powers of 3, 5 and 7.
+     * @param group The block group number.
+     * @return True if the group has a copy of the super block.
+     */
+    private static boolean hasSuperBlock(int group) {
+        if (group <= 1)
+            return true;
+        for (int base = 3; base <= 7; base += 2) {
+            long power = base;
+            while (power < group)
+                power *= base;
+            if (power == group)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Normalises a path to start with "/" and have no repeated or trailing "/", with "" for the root.
+     * @param path The path.
+     * @return The normalised path.
+     */
+    private static String normalise(String path) {
+        StringBuilder normalised = new StringBuilder();
+        for (String name : path.split("/"))
+            if (!name.isEmpty())
+                normalised.append('/').append(name);
+        return normalised.toString();
+    }
+
+    /**
+     * Name: BlockSource
+     *
+     * Supplies the data blocks of a file while its block pointers are built.
+     */
+    private interface BlockSource {
+
+        /**
+         * Returns true if any block in a range of the file has data.
+         * @param from The first block in the range.
+         * @param to The block after the last block in the range.
+         * @return True if the range has data, false if it is all holes.
+         */
+        boolean hasData(long from, long to);
+
+        /**
+         * Obtains the data block for a block of the file, allocating it if needed.
+         * @param logicalBlock The block number in the file.
+         * @return The block number in the volume.
+         * @throws IOException if the image couldn't be written.
+         */
+        int getBlock(long logicalBlock) throws IOException;
+    }
+
+    /**
+     * Name: DirState
+     *
+     * A directory being generated: its blocks and where the next entry goes.
+     */
+    private class DirState {
+
+        private final int iNodeNumber;          /* The iNode number of the directory */
+        private final long time;                /* The access, creation and modified time */
+        private int[] blocks = new int[1];      /* The blocks of entries, in order */
+        private int numBlocks;                  /* The number of blocks of entries */
+        private int blockUsed;                  /* The number of bytes used by entries in the last block */
+        private long lastEntryOffset;           /* The offset in the image of the last entry */
+        private int lastEntryLength;            /* The length the last entry needs, excluding padding to the end of the block */
+        private int numLinks = 2;               /* The number of hard links - its entry in the parent, "." and each subdirectory's ".." */
+
+        /**
+         * Constructor to initialise an empty directory.
+         * @param iNodeNumber The iNode number of the directory.
+         */
+        private DirState(int iNodeNumber) {
+            this.iNodeNumber = iNodeNumber;
+            this.time = BASE_TIME + random.nextInt(TIME_RANGE);
+        }
+    }
+}
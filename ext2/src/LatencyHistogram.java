@@ -0,0 +1,135 @@
+package ext2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Name: LatencyHistogram
+ *
+ * This class records latencies, in nanoseconds, into a fixed set of log-linear buckets so percentiles can be estimated.
+ * Each power of two is split into 8 buckets, so an estimated percentile is within 12.5% of the true value,
+ * and values below 8 are recorded exactly. Recording a value increments its bucket, adds it to a striped sum,
+ * and only writes the maximum when the value is larger, with no allocation and no lock, so the histogram can be
+ * recorded into from many threads at once.
+ *
+ * @author Harry Baines
+ * @see Metrics
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;                           /* Number of bits of each value kept below its highest bit */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;            /* Number of buckets each power of two is split into */
+    private static final int NUM_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;    /* Number of buckets covering every long */
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);    /* Number of values recorded in each bucket */
+    private final AtomicLong max = new AtomicLong();                            /* The largest value recorded */
+    private final LongAdder total = new LongAdder();                            /* The sum of every value recorded */
+
+    /**
+     * Records a latency.
+     * @param nanos The latency in nanoseconds - negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.total.add(value);
+        long current = this.max.get();
+        while (value > current && !this.max.compareAndSet(current, value))
+            current = this.max.get();
+    }
+
+    /**
+     * Obtains the number of latencies recorded.
+     * @return The count.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+            count += this.counts.get(bucket);
+        return count;
+    }
+
+    /**
+     * Obtains the largest latency recorded.
+     * @return The maximum, in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Obtains the mean latency recorded.
+     * @return The mean, in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = this.getCount();
+        return (count == 0) ? 0 : (double) this.total.sum() / count;
+    }
+
+    /**
+     * Estimates a percentile of the latencies recorded, as the upper bound of the bucket it falls in.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The latency, in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+
+        long[] snapshot = new long[NUM_BUCKETS];
+        long count = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            snapshot[bucket] = this.counts.get(bucket);
+            count += snapshot[bucket];
+        }
+        if (count == 0)
+            return 0;
+
+        // Find the bucket holding the value at the percentile's rank
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank)
+                return Math.min(upperBoundOf(bucket), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Removes every latency recorded. Latencies recorded while the histogram is being reset may be kept or lost.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+            this.counts.set(bucket, 0);
+        this.total.reset();
+        this.max.set(0);
+    }
+
+    /**
+     * Finds the bucket a value is recorded in.
+     * @param value The value, at least 0.
+     * @return The bucket index.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Finds the largest value recorded in a bucket.
+     * @param bucket The bucket index.
+     * @return The largest value in the bucket.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        if (bucket == NUM_BUCKETS - 1)
+            return Long.MAX_VALUE;
+        int next = bucket + 1;
+        int exponent = next / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowerBoundOfNext = (long) (SUB_BUCKETS + next % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowerBoundOfNext - 1;
+    }
+}
@@ -0,0 +1,150 @@
+package ext2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Name: MappedBlockDevice
+ *
+ * This class represents a block device which is memory mapped, so bytes are read straight from the page cache.
+ * A single mapping is limited to 2GB, so the device is split into read only segments of SEGMENT_SIZE bytes.
+ * Reads only use absolute gets on the segments, so the segment positions are never changed.
+ * Once the device is closed every read throws a ClosedChannelException, as a closed ChannelBlockDevice does.
+ *
+ * @author Harry Baines
+ * @see BlockDevice
+ */
+public class MappedBlockDevice implements BlockDevice {
+
+    public static final long SEGMENT_SIZE = 1L << 30;   /* Size, in bytes, of each memory mapped segment */
+
+    private volatile MappedByteBuffer[] segments;       /* Memory mapped segments covering the entire device, or null once closed */
+    private long size;                                  /* The total size of the device, in bytes */
+
+    /**
+     * Constructor to memory map the given file.
+     * @param filePath The file path to the volume.
+     * @throws IOException if the file couldn't be opened or mapped.
+     */
+    public MappedBlockDevice(String filePath) throws IOException {
+
+        // Mappings remain valid after the channel is closed, so no file handle needs to be kept
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+
+            this.size = channel.size();
+            int numSegments = (int) Math.max(1, (this.size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[numSegments];
+
+            for (int i = 0; i < numSegments; i++) {
+                long segmentStart = i * SEGMENT_SIZE;
+                long segmentLength = Math.min(SEGMENT_SIZE, this.size - segmentStart);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * Returns the mapped segments, checking the device hasn't been closed.
+     * @throws UncheckedIOException wrapping a ClosedChannelException if the device has been closed.
+     * @return The segments.
+     */
+    private MappedByteBuffer[] getSegments() {
+        MappedByteBuffer[] segments = this.segments;
+        if (segments == null)
+            throw new UncheckedIOException(new ClosedChannelException());
+        return segments;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Reads spanning more than one mapped segment are split across the segments.
+     */
+    @Override
+    public void read(long position, byte[] dst, int dstOffset, int length) {
+
+        // Copy from each segment covering the requested range in turn
+        MappedByteBuffer[] segments = this.getSegments();
+        while (length > 0) {
+            MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+            int offsetInSegment = (int) (position % SEGMENT_SIZE);
+            int toCopy = Math.min(length, segment.capacity() - offsetInSegment);
+
+            segment.get(offsetInSegment, dst, dstOffset, toCopy);
+            position += toCopy;
+            dstOffset += toCopy;
+            length -= toCopy;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The integer is read straight from the mapped segment unless it spans two segments.
+     */
+    @Override
+    public int readInt(long position) {
+        MappedByteBuffer segment = this.getSegments()[(int) (position / SEGMENT_SIZE)];
+        int offsetInSegment = (int) (position % SEGMENT_SIZE);
+        if (offsetInSegment + Integer.BYTES > segment.capacity())
+            return BlockDevice.super.readInt(position);
+        return segment.getInt(offsetInSegment);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The integer is read straight from the mapped segment unless it spans two segments.
+     */
+    @Override
+    public short readShort(long position) {
+        MappedByteBuffer segment = this.getSegments()[(int) (position / SEGMENT_SIZE)];
+        int offsetInSegment = (int) (position % SEGMENT_SIZE);
+        if (offsetInSegment + Short.BYTES > segment.capacity())
+            return BlockDevice.super.readShort(position);
+        return segment.getShort(offsetInSegment);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Slices of the mapped segments are written directly, so the bytes go straight from the page cache to the channel.
+     */
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        MappedByteBuffer[] segments = this.segments;
+        if (segments == null)
+            throw new ClosedChannelException();
+        while (count > 0) {
+            MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+            int offsetInSegment = (int) (position % SEGMENT_SIZE);
+            int toCopy = (int) Math.min(count, segment.capacity() - offsetInSegment);
+
+            BlockDevice.writeFully(segment.slice(offsetInSegment, toCopy), target);
+            position += toCopy;
+            count -= toCopy;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Releases the segments - the mappings themselves are unmapped once the segments are garbage collected.
+     * Any later read throws a ClosedChannelException.
+     */
+    @Override
+    public void close() {
+        this.segments = null;
+    }
+}
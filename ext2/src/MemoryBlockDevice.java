@@ -0,0 +1,97 @@
+package ext2;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Name: MemoryBlockDevice
+ *
+ * This class represents a block device held entirely in an array of bytes.
+ * This is only suitable for small volumes, as arrays are limited to 2GB.
+ *
+ * @author Harry Baines
+ * @see BlockDevice
+ */
+public class MemoryBlockDevice implements BlockDevice {
+
+    private byte[] bytes;       /* Array of bytes to store the entire device */
+
+    /**
+     * Constructor to read the given file entirely into memory.
+     * @param filePath The file path to the volume.
+     * @throws IOException if the file couldn't be read, or is too large to hold in an array.
+     */
+    public MemoryBlockDevice(String filePath) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+
+            // Arrays are limited to 2GB, larger volumes must use another device
+            if (file.length() > Integer.MAX_VALUE)
+                throw new IOException("Volume is too large to read into memory - open it memory mapped instead.");
+
+            this.bytes = new byte[(int) file.length()];
+            file.readFully(this.bytes);
+        }
+    }
+
+    /**
+     * Constructor to wrap an existing array of bytes as a device.
+     * @param bytes The bytes of the device.
+     */
+    public MemoryBlockDevice(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void read(long position, byte[] dst, int dstOffset, int length) {
+        System.arraycopy(this.bytes, (int) position, dst, dstOffset, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The integer is decoded straight from the array.
+     */
+    @Override
+    public int readInt(long position) {
+        int index = (int) position;
+        return (this.bytes[index] & 0xFF) | (this.bytes[index + 1] & 0xFF) << 8 | (this.bytes[index + 2] & 0xFF) << 16 | (this.bytes[index + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The integer is decoded straight from the array.
+     */
+    @Override
+    public short readShort(long position) {
+        int index = (int) position;
+        return (short) ((this.bytes[index] & 0xFF) | (this.bytes[index + 1] & 0xFF) << 8);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The array is wrapped and written directly, without an intermediate copy.
+     */
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        BlockDevice.writeFully(ByteBuffer.wrap(this.bytes, (int) position, (int) count), target);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long size() {
+        return this.bytes.length;
+    }
+
+    /**
+     * Nothing to release for an in memory device.
+     */
+    @Override
+    public void close() {
+    }
+}
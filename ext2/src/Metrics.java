@@ -0,0 +1,196 @@
+package ext2;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Name: Metrics
+ *
+ * This class records how much work a volume does and how long it takes: counters of blocks read, iNodes decoded,
+ * directory entries scanned and bytes copied to callers, and a latency histogram for each operation.
+ * Metrics are off by default. A volume only records them between Volume.enableMetrics() and Volume.disableMetrics(),
+ * and while they are off each instrumented method only checks a single field, so they cost next to nothing.
+ * The metrics can be read as a text snapshot or exposed over JMX with registerMBean().
+ *
+ * @author Harry Baines
+ * @see Volume
+ * @see LatencyHistogram
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * Name: Operation
+     *
+     * The operations timed by the metrics.
+     */
+    public enum Operation {
+        BLOCK_READ,             /* Volume.readBytes(), used by DataBlock.readBlock() and every read of file data */
+        INODE_DECODE,           /* Parsing an iNode that wasn't in the iNode cache */
+        DIRECTORY_LOOKUP,       /* Directory.lookup() */
+        FILE_READ               /* Ext2File.read() and readAsync() */
+    }
+
+    private final LongAdder blocksRead = new LongAdder();                   /* Number of blocks read from the volume */
+    private final LongAdder bytesRead = new LongAdder();                    /* Number of bytes read from the volume */
+    private final LongAdder iNodesDecoded = new LongAdder();                /* Number of iNodes decoded */
+    private final LongAdder directoryEntriesScanned = new LongAdder();      /* Number of directory entries scanned */
+    private final LongAdder bytesCopied = new LongAdder();                  /* Number of bytes of file data copied to callers */
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];   /* Latencies, indexed by operation */
+
+    /**
+     * Constructor to initialise metrics with every counter and histogram at zero.
+     */
+    public Metrics() {
+        for (int i = 0; i < this.latencies.length; i++)
+            this.latencies[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Records a read of bytes from the volume.
+     *
+     * @param numBlocks The number of blocks covered by the read.
+     * @param length The number of bytes read.
+     * @param nanos The time the read took, in nanoseconds.
+     */
+    public void recordBlockRead(int numBlocks, int length, long nanos) {
+        this.blocksRead.add(numBlocks);
+        this.bytesRead.add(length);
+        this.latencies[Operation.BLOCK_READ.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the decoding of an iNode.
+     * @param nanos The time decoding took, in nanoseconds.
+     */
+    public void recordINodeDecode(long nanos) {
+        this.iNodesDecoded.increment();
+        this.latencies[Operation.INODE_DECODE.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records a lookup of a name in a directory.
+     * @param nanos The time the lookup took, in nanoseconds.
+     */
+    public void recordDirectoryLookup(long nanos) {
+        this.latencies[Operation.DIRECTORY_LOOKUP.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records directory entries scanned by a lookup or listing.
+     * @param numEntries The number of entries scanned.
+     */
+    public void recordDirectoryEntries(long numEntries) {
+        this.directoryEntriesScanned.add(numEntries);
+    }
+
+    /**
+     * Records a read of file data by a caller.
+     * @param numBytes The number of bytes copied to the caller.
+     * @param nanos The time the read took, in nanoseconds.
+     */
+    public void recordFileRead(long numBytes, long nanos) {
+        this.bytesCopied.add(numBytes);
+        this.latencies[Operation.FILE_READ.ordinal()].record(nanos);
+    }
+
+    /**
+     * Obtains the latency histogram of an operation.
+     * @param operation The operation.
+     * @return The histogram.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return this.latencies[operation.ordinal()];
+    }
+
+    @Override
+    public long getBlocksRead() {
+        return this.blocksRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    @Override
+    public long getINodesDecoded() {
+        return this.iNodesDecoded.sum();
+    }
+
+    @Override
+    public long getDirectoryEntriesScanned() {
+        return this.directoryEntriesScanned.sum();
+    }
+
+    @Override
+    public long getBytesCopied() {
+        return this.bytesCopied.sum();
+    }
+
+    @Override
+    public Map<String, Long> getLatencies() {
+        Map<String, Long> latencies = new LinkedHashMap<String, Long>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = this.getLatency(operation);
+            latencies.put(operation + ".count", histogram.getCount());
+            latencies.put(operation + ".p50", histogram.getPercentile(50));
+            latencies.put(operation + ".p99", histogram.getPercentile(99));
+            latencies.put(operation + ".max", histogram.getMax());
+        }
+        return latencies;
+    }
+
+    @Override
+    public String getStatsString() {
+        String stats = "";
+        stats += "Blocks read:               " + this.getBlocksRead() + " (" + this.getBytesRead() + " bytes)\n";
+        stats += "iNodes decoded:            " + this.getINodesDecoded() + "\n";
+        stats += "Directory entries scanned: " + this.getDirectoryEntriesScanned() + "\n";
+        stats += "Bytes copied to callers:   " + this.getBytesCopied() + "\n";
+        stats += String.format("%-18s %10s %10s %10s %10s%n", "Operation", "Count", "p50 (us)", "p99 (us)", "Max (us)");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = this.getLatency(operation);
+            stats += String.format("%-18s %10d %10.2f %10.2f %10.2f%n", operation, histogram.getCount(),
+                histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3, histogram.getMax() / 1e3);
+        }
+        return stats;
+    }
+
+    @Override
+    public void reset() {
+        this.blocksRead.reset();
+        this.bytesRead.reset();
+        this.iNodesDecoded.reset();
+        this.directoryEntriesScanned.reset();
+        this.bytesCopied.reset();
+        for (LatencyHistogram histogram : this.latencies)
+            histogram.reset();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, as ext2:type=Metrics,name=(name).
+     *
+     * @param name The name to register under, e.g. the path of the volume.
+     * @return The name the MBean was registered as.
+     * @throws JMException if the MBean couldn't be registered, e.g. if the name is already in use.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("ext2:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters an MBean registered by registerMBean().
+     * @param objectName The name the MBean was registered as.
+     * @throws JMException if the MBean couldn't be unregistered.
+     */
+    public static void unregisterMBean(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+}
@@ -0,0 +1,62 @@
+package ext2;
+
+import java.util.Map;
+
+/**
+ * Name: MetricsMXBean
+ *
+ * This interface is the management interface of a volume's metrics, exposed over JMX by Metrics.registerMBean().
+ *
+ * @author Harry Baines
+ * @see Metrics
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Obtains the number of blocks read from the volume.
+     * @return The number of blocks.
+     */
+    long getBlocksRead();
+
+    /**
+     * Obtains the number of bytes read from the volume.
+     * @return The number of bytes.
+     */
+    long getBytesRead();
+
+    /**
+     * Obtains the number of iNodes decoded from the iNode tables.
+     * @return The number of iNodes.
+     */
+    long getINodesDecoded();
+
+    /**
+     * Obtains the number of directory entries scanned by lookups and listings.
+     * @return The number of entries.
+     */
+    long getDirectoryEntriesScanned();
+
+    /**
+     * Obtains the number of bytes of file data copied to callers of Ext2File.read().
+     * @return The number of bytes.
+     */
+    long getBytesCopied();
+
+    /**
+     * Obtains the count, p50, p99 and maximum latency of each operation, keyed by e.g. "FILE_READ.p99".
+     * Latencies are in nanoseconds.
+     * @return The latencies.
+     */
+    Map<String, Long> getLatencies();
+
+    /**
+     * Returns a String containing every metric.
+     * @return The snapshot.
+     */
+    String getStatsString();
+
+    /**
+     * Resets every counter and histogram to zero.
+     */
+    void reset();
+}
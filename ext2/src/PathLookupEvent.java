@@ -0,0 +1,37 @@
+package ext2;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Name: PathLookupEvent
+ *
+ * This class is the JDK Flight Recorder event emitted each time a path is resolved, by opening an Ext2File or by
+ * Volume.resolve(). The duration of the event is the time taken to resolve the path.
+ * An event object is allocated for every lookup, but the path and result are only copied into it and it is only committed
+ * while a recording has the event enabled.
+ *
+ * @author Harry Baines
+ * @see Ext2File
+ * @see Volume
+ */
+@Name("ext2.PathLookup")
+@Label("Path Lookup")
+@Category({ "ext2" })
+@Description("A path resolved to an iNode")
+final class PathLookupEvent extends Event {
+
+    @Label("Path")
+    String path;                /* The path resolved */
+
+    @Label("Components")
+    @Description("The number of names looked up in directories")
+    int components;             /* The number of names looked up */
+
+    @Label("iNode")
+    @Description("The iNode the path refers to, or 0 if it doesn't exist")
+    int iNodeNumber;            /* The iNode number the path refers to, or 0 */
+}
@@ -0,0 +1,198 @@
+package ext2;
+
+/**
+ * Name: SpaceReport
+ *
+ * This class holds the results of analysing the block and iNode bitmaps of every block group in a volume.
+ * For each group it records the used and free blocks and iNodes counted from the bitmaps, the free counts stored in the
+ * group descriptor, and a histogram of the lengths of runs of free blocks. Runs are counted within each group.
+ *
+ * @author Harry Baines
+ * @see BitmapAnalyzer
+ */
+public class SpaceReport {
+
+    public static final int HISTOGRAM_BUCKETS = 32;     /* Number of buckets in a free extent histogram - bucket n counts runs of 2^n to 2^(n+1)-1 blocks */
+
+    private final GroupUsage[] groups;                  /* The usage of each block group */
+
+    /**
+     * Constructor to initialise a report from the usage of each block group.
+     * @param groups The usage of each block group, indexed by group number.
+     */
+    public SpaceReport(GroupUsage[] groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Obtains the usage of a single block group.
+     * @param group The block group number.
+     * @return The usage of the group.
+     */
+    public GroupUsage getGroup(int group) {
+        return this.groups[group];
+    }
+
+    /**
+     * Obtains the number of block groups in the report.
+     * @return The number of groups.
+     */
+    public int getGroupCount() {
+        return this.groups.length;
+    }
+
+    /**
+     * Obtains the total number of used blocks counted from the bitmaps.
+     * @return The number of used blocks.
+     */
+    public long getUsedBlocks() {
+        long total = 0;
+        for (GroupUsage group : this.groups)
+            total += group.usedBlocks;
+        return total;
+    }
+
+    /**
+     * Obtains the total number of free blocks counted from the bitmaps.
+     * @return The number of free blocks.
+     */
+    public long getFreeBlocks() {
+        long total = 0;
+        for (GroupUsage group : this.groups)
+            total += group.freeBlocks;
+        return total;
+    }
+
+    /**
+     * Obtains the total number of used iNodes counted from the bitmaps.
+     * @return The number of used iNodes.
+     */
+    public long getUsedINodes() {
+        long total = 0;
+        for (GroupUsage group : this.groups)
+            total += group.usedINodes;
+        return total;
+    }
+
+    /**
+     * Obtains the total number of free iNodes counted from the bitmaps.
+     * @return The number of free iNodes.
+     */
+    public long getFreeINodes() {
+        long total = 0;
+        for (GroupUsage group : this.groups)
+            total += group.freeINodes;
+        return total;
+    }
+
+    /**
+     * Obtains the histogram of free extent lengths over all groups.
+     * @return The histogram - bucket n counts runs of 2^n to 2^(n+1)-1 free blocks.
+     */
+    public long[] getFreeExtentHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (GroupUsage group : this.groups)
+            for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++)
+                histogram[bucket] += group.freeExtentHistogram[bucket];
+        return histogram;
+    }
+
+    /**
+     * Obtains the length of the longest run of free blocks in any group.
+     * @return The longest free extent, in blocks.
+     */
+    public int getLargestFreeExtent() {
+        int largest = 0;
+        for (GroupUsage group : this.groups)
+            largest = Math.max(largest, group.largestFreeExtent);
+        return largest;
+    }
+
+    /**
+     * Returns true if the free counts of every group descriptor match the bitmaps.
+     * @return True if the descriptors are consistent with the bitmaps.
+     */
+    public boolean isConsistent() {
+        for (GroupUsage group : this.groups)
+            if (!group.isConsistent())
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns a String summarising the report, listing any groups whose descriptor disagrees with its bitmaps.
+     * @return The summary.
+     */
+    public String getReportString() {
+
+        String report = "";
+        report += "Used / free blocks:          " + this.getUsedBlocks() + " / " + this.getFreeBlocks() + "\n";
+        report += "Used / free iNodes:          " + this.getUsedINodes() + " / " + this.getFreeINodes() + "\n";
+        report += "Largest free extent:         " + this.getLargestFreeExtent() + " blocks\n";
+
+        long[] histogram = this.getFreeExtentHistogram();
+        report += "Free extents (blocks: count):\n";
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++)
+            if (histogram[bucket] > 0)
+                report += String.format("  %10d-%-10d %d%n", 1L << bucket, (1L << (bucket + 1)) - 1, histogram[bucket]);
+
+        for (GroupUsage group : this.groups)
+            if (!group.isConsistent())
+                report += "Group " + group.group + " descriptor mismatch: free blocks " + group.descriptorFreeBlocks + " (bitmap " + group.freeBlocks
+                    + "), free iNodes " + group.descriptorFreeINodes + " (bitmap " + group.freeINodes + ")\n";
+        report += "Descriptors consistent:      " + this.isConsistent() + "\n";
+        return report;
+    }
+
+    /**
+     * Name: GroupUsage
+     *
+     * The usage of a single block group, counted from its bitmaps, and the free counts from its group descriptor.
+     */
+    public static class GroupUsage {
+
+        public final int group;                         /* The block group number */
+        public final int usedBlocks;                    /* Number of blocks marked as used in the block bitmap */
+        public final int freeBlocks;                    /* Number of blocks marked as free in the block bitmap */
+        public final int usedINodes;                    /* Number of iNodes marked as used in the iNode bitmap */
+        public final int freeINodes;                    /* Number of iNodes marked as free in the iNode bitmap */
+        public final int descriptorFreeBlocks;          /* Free block count from the group descriptor */
+        public final int descriptorFreeINodes;          /* Free iNode count from the group descriptor */
+        public final long[] freeExtentHistogram;        /* Histogram of free extent lengths - bucket n counts runs of 2^n to 2^(n+1)-1 blocks */
+        public final int largestFreeExtent;             /* Length of the longest run of free blocks */
+
+        /**
+         * Constructor to initialise the usage of a block group.
+         *
+         * @param group The block group number.
+         * @param usedBlocks Number of blocks marked as used in the block bitmap.
+         * @param freeBlocks Number of blocks marked as free in the block bitmap.
+         * @param usedINodes Number of iNodes marked as used in the iNode bitmap.
+         * @param freeINodes Number of iNodes marked as free in the iNode bitmap.
+         * @param descriptorFreeBlocks Free block count from the group descriptor.
+         * @param descriptorFreeINodes Free iNode count from the group descriptor.
+         * @param freeExtentHistogram Histogram of free extent lengths.
+         * @param largestFreeExtent Length of the longest run of free blocks.
+         */
+        public GroupUsage(int group, int usedBlocks, int freeBlocks, int usedINodes, int freeINodes,
+                          int descriptorFreeBlocks, int descriptorFreeINodes, long[] freeExtentHistogram, int largestFreeExtent) {
+            this.group = group;
+            this.usedBlocks = usedBlocks;
+            this.freeBlocks = freeBlocks;
+            this.usedINodes = usedINodes;
+            this.freeINodes = freeINodes;
+            this.descriptorFreeBlocks = descriptorFreeBlocks;
+            this.descriptorFreeINodes = descriptorFreeINodes;
+            this.freeExtentHistogram = freeExtentHistogram;
+            this.largestFreeExtent = largestFreeExtent;
+        }
+
+        /**
+         * Returns true if the free counts in the group descriptor match the bitmaps.
+         * @return True if the descriptor is consistent with the bitmaps.
+         */
+        public boolean isConsistent() {
+            return this.descriptorFreeBlocks == this.freeBlocks && this.descriptorFreeINodes == this.freeINodes;
+        }
+    }
+}
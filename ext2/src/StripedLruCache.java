@@ -0,0 +1,176 @@
+package ext2;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Name: StripedLruCache
+ *
+ * This class represents a bounded map which evicts least recently used entries, shared by the iNode and dentry caches.
+ * Like the block cache, entries are split into segments by the hash of their key, each with its own lock and its own
+ * share of the capacity, so threads walking or extracting a tree in parallel rarely contend on a lookup.
+ * Recency is tracked per segment, so the entry evicted is the least recently used of its segment.
+ * A cache with a maximum size of 0 has no segments and holds nothing, so every lookup misses.
+ *
+ * @author Harry Baines
+ * @see INodeCache
+ * @see DentryCache
+ * @see BlockCache
+ */
+final class StripedLruCache<K, V> {
+
+    public static final int MAX_SEGMENTS            = 16;     /* The maximum number of independently locked segments */
+    public static final int MIN_ENTRIES_PER_SEGMENT = 64;     /* The minimum number of entries held by each segment */
+
+    private final Segment<K, V>[] segments;             /* The segments the cached entries are divided between */
+    private final int maxSize;                          /* The maximum number of entries held by the whole cache */
+    private final LongAdder evictionCount;              /* Number of entries evicted to make room for another entry */
+
+    /**
+     * Constructor to initialise an empty cache.
+     * @param maxSize The maximum number of entries to hold, or 0 to hold nothing.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public StripedLruCache(int maxSize) {
+
+        // Use a power of 2 number of segments, sharing the capacity between them - none at all if nothing is held
+        maxSize = Math.max(0, maxSize);
+        int numSegments = (maxSize == 0) ? 0 : Math.min(MAX_SEGMENTS, Math.max(1, maxSize / MIN_ENTRIES_PER_SEGMENT));
+        numSegments = Integer.highestOneBit(numSegments);
+        int entriesPerSegment = (numSegments == 0) ? 0 : (maxSize + numSegments - 1) / numSegments;
+
+        this.maxSize = maxSize;
+        this.evictionCount = new LongAdder();
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++)
+            this.segments[i] = new Segment<K, V>(entriesPerSegment, this.evictionCount);
+    }
+
+    /**
+     * Looks up a cached value, marking it as most recently used in its segment.
+     * @param key The key.
+     * @return The cached value, or null if it isn't cached.
+     */
+    public V get(K key) {
+        if (this.segments.length == 0)
+            return null;
+        return this.segmentFor(key).get(key);
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entry of its segment if the segment is full.
+     * Nothing is kept if the cache can't hold any entries.
+     * @param key The key.
+     * @param value The value.
+     */
+    public void put(K key, V value) {
+        if (this.segments.length == 0)
+            return;
+        this.segmentFor(key).put(key, value);
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : this.segments)
+            segment.clear();
+    }
+
+    /**
+     * Returns the segment responsible for the given key.
+     * @param key The key.
+     * @return The segment the key is cached in.
+     */
+    private Segment<K, V> segmentFor(K key) {
+        return this.segments[(int) (BlockCache.mix(key.hashCode()) >>> 40) & (this.segments.length - 1)];
+    }
+
+    /**
+     * Obtains the number of entries currently cached.
+     * @return The number of cached entries.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment<K, V> segment : this.segments)
+            size += segment.getSize();
+        return size;
+    }
+
+    /**
+     * Obtains the maximum number of entries the cache can hold.
+     * @return The cache capacity.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Obtains the number of entries evicted from the cache.
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    /**
+     * Title: Segment
+     *
+     * This inner class holds a share of the cached entries in an access ordered map, guarded by its own lock.
+     *
+     * @author Harry Baines
+     */
+    private static class Segment<K, V> {
+
+        private final LinkedHashMap<K, V> entries;      /* Cached entries in order of use, least recently used first */
+
+        /**
+         * Constructor to initialise an empty segment.
+         * @param capacity The number of entries this segment can hold.
+         * @param evictionCount The counter of entries evicted from the whole cache.
+         */
+        public Segment(int capacity, LongAdder evictionCount) {
+            this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    if (size() <= capacity)
+                        return false;
+                    evictionCount.increment();
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Looks up a cached value and marks it as most recently used.
+         * @return The cached value, or null if it isn't cached.
+         */
+        public synchronized V get(K key) {
+            return this.entries.get(key);
+        }
+
+        /**
+         * Caches a value, evicting the least recently used entry if the segment is full.
+         */
+        public synchronized void put(K key, V value) {
+            this.entries.put(key, value);
+        }
+
+        /**
+         * Removes every entry from the segment.
+         */
+        public synchronized void clear() {
+            this.entries.clear();
+        }
+
+        /**
+         * @return The number of entries in the segment.
+         */
+        public synchronized int getSize() {
+            return this.entries.size();
+        }
+    }
+}
@@ -15,14 +15,25 @@ import java.nio.ByteOrder;
  */
 public class SuperBlock extends DataBlock {
 
+    public static final int SUPERBLOCK_OFFSET       = 1024;   /* Offset, in bytes, of the super block from the start of the volume */
+    public static final int SUPERBLOCK_SIZE         = 1024;   /* The size of the super block, in bytes */
     public static final int NUM_INODE_OFFSET        = 0;      /* Offset, in bytes, for number of iNodes */
     public static final int NUM_BLOCKS_OFFSET       = 4;      /* Offset, in bytes, for number of blocks */
+    public static final int FIRST_DATA_BLOCK_OFFSET = 20;     /* Offset, in bytes, for the first data block */
     public static final int BLOCK_SIZE_OFFSET       = 24;     /* Offset, in bytes, for block size */
     public static final int BLOCKS_PER_GROUP_OFFSET = 32;     /* Offset, in bytes, for blocks per block group */
     public static final int INODES_PER_GROUP_OFFSET = 40;     /* Offset, in bytes, for iNodes per block group */
     public static final int MAGIC_NUM_OFFSET        = 56;     /* Offset, in bytes, for magic number */
     public static final int INODE_SIZE_OFFSET       = 88;     /* Offset, in bytes, for iNode size */
+    public static final int FEATURE_COMPAT_OFFSET   = 92;     /* Offset, in bytes, for the compatible feature flags */
+    public static final int FEATURE_INCOMPAT_OFFSET = 96;     /* Offset, in bytes, for the incompatible feature flags */
     public static final int VOLUME_LBL_OFFSET       = 120;    /* Offset, in bytes, for volume label */
+    public static final int HASH_SEED_OFFSET        = 236;    /* Offset, in bytes, for the directory hash seed */
+    public static final int DEF_HASH_VERSION_OFFSET = 252;    /* Offset, in bytes, for the default directory hash version */
+    public static final int FLAGS_OFFSET            = 352;    /* Offset, in bytes, for the file system flags */
+    public static final int FEATURE_DIR_INDEX       = 0x0020; /* Compatible feature flag for hash indexed directories */
+    public static final int FEATURE_FILETYPE        = 0x0002; /* Incompatible feature flag for file types in directory entries */
+    public static final int FLAG_UNSIGNED_HASH      = 0x0002; /* File system flag set when directory hashes use unsigned characters */
 
     private int totaliNodes;                                  /* The total number of iNodes in the file system */
     private int totalBlocks;                                  /* The total number of blocks in the file system */
@@ -32,6 +43,12 @@ public class SuperBlock extends DataBlock {
     private String magicNumber;                               /* The magic number which uniquely identifies the file system type */
     private int iNodeSize;                                    /* The size of each iNode in the file system, in bytes */
     private String volumeLbl;                                 /* The volume label relevant to this file system, as a string */
+    private int firstDataBlock;                               /* The block number of the first block in block group 0 */
+    private int featureCompat;                                /* The compatible feature flags */
+    private int featureIncompat;                              /* The incompatible feature flags */
+    private int[] hashSeed;                                   /* The seed for directory hashes */
+    private int defHashVersion;                               /* The default directory hash version */
+    private int flags;                                        /* The file system flags */
 
     private ByteBuffer byteBuffer;                            /* Byte buffer reference for setting super block values */
 
@@ -41,7 +58,8 @@ public class SuperBlock extends DataBlock {
      */
     public SuperBlock(Volume vol) {
         super(vol);
-        this.byteBuffer = this.getVolume().getByteBuffer();
+        this.byteBuffer = ByteBuffer.wrap(this.readBlock(SUPERBLOCK_OFFSET, SUPERBLOCK_SIZE));
+        this.byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
         this.setSuperblockValues();
     }
     
@@ -52,18 +70,28 @@ public class SuperBlock extends DataBlock {
     private void setSuperblockValues() {
 
         // Initialise all super block fields
-        this.blockSize      = 1024 * (int) Math.pow(2, this.byteBuffer.getInt(1024 + BLOCK_SIZE_OFFSET));
-        this.totaliNodes    = this.byteBuffer.getInt(this.blockSize + NUM_INODE_OFFSET);
-        this.totalBlocks    = this.byteBuffer.getInt(this.blockSize + NUM_BLOCKS_OFFSET);
-        this.blocksPerGroup = this.byteBuffer.getInt(this.blockSize + BLOCKS_PER_GROUP_OFFSET);
-        this.iNodesPerGroup = this.byteBuffer.getInt(this.blockSize + INODES_PER_GROUP_OFFSET);
-        this.magicNumber    = String.format("0x%02X", this.byteBuffer.getShort(this.blockSize + MAGIC_NUM_OFFSET));
-        this.iNodeSize      = this.byteBuffer.getInt(this.blockSize + INODE_SIZE_OFFSET);
+        this.blockSize      = 1024 * (int) Math.pow(2, this.byteBuffer.getInt(BLOCK_SIZE_OFFSET));
+        this.totaliNodes    = this.byteBuffer.getInt(NUM_INODE_OFFSET);
+        this.totalBlocks    = this.byteBuffer.getInt(NUM_BLOCKS_OFFSET);
+        this.blocksPerGroup = this.byteBuffer.getInt(BLOCKS_PER_GROUP_OFFSET);
+        this.iNodesPerGroup = this.byteBuffer.getInt(INODES_PER_GROUP_OFFSET);
+        this.magicNumber    = String.format("0x%02X", this.byteBuffer.getShort(MAGIC_NUM_OFFSET));
+        this.iNodeSize      = this.byteBuffer.getInt(INODE_SIZE_OFFSET);
         this.volumeLbl      = "";
+        this.firstDataBlock  = this.byteBuffer.getInt(FIRST_DATA_BLOCK_OFFSET);
+        this.featureCompat   = this.byteBuffer.getInt(FEATURE_COMPAT_OFFSET);
+        this.featureIncompat = this.byteBuffer.getInt(FEATURE_INCOMPAT_OFFSET);
+        this.defHashVersion  = this.byteBuffer.get(DEF_HASH_VERSION_OFFSET) & 0xFF;
+        this.flags           = this.byteBuffer.getInt(FLAGS_OFFSET);
+
+        // Initialise directory hash seed
+        this.hashSeed = new int[4];
+        for (int i = 0; i < this.hashSeed.length; i++)
+            this.hashSeed[i] = this.byteBuffer.getInt(HASH_SEED_OFFSET + i * Integer.BYTES);
 
         // Initialise volume label
         for (int i = 0; i < 16; i++)
-            this.volumeLbl += (char) this.byteBuffer.get(this.blockSize + VOLUME_LBL_OFFSET + i);
+            this.volumeLbl += (char) this.byteBuffer.get(VOLUME_LBL_OFFSET + i);
     }
 
     /**
@@ -91,9 +119,9 @@ public class SuperBlock extends DataBlock {
         String furtherInfo = "";
         furtherInfo += "iNode table size (blocks):   " + this.getiNodeTableSize() + "\n";
         furtherInfo += "iNode table size (bytes):    " + this.getiNodeTableSize() * this.getBlockSize() + "\n";
-        furtherInfo += "Total no. of block groups:   " + (int) Math.ceil((double)this.getTotalBlocks() / this.getBlocksPerGroup()) + "\n";
-        furtherInfo += "Number of group descriptors: " + (int) Math.ceil((double)this.getTotalBlocks() / this.getBlocksPerGroup()) + "\n";
-        furtherInfo += "Total volume size (bytes):   " + this.getTotalBlocks() * this.getBlockSize() + "\n";
+        furtherInfo += "Total no. of block groups:   " + this.getNumBlockGroups() + "\n";
+        furtherInfo += "Number of group descriptors: " + this.getNumBlockGroups() + "\n";
+        furtherInfo += "Total volume size (bytes):   " + (this.getTotalBlocks() & 0xFFFFFFFFL) * this.getBlockSize() + "\n";
         return furtherInfo;
     }
 
@@ -121,6 +149,16 @@ public class SuperBlock extends DataBlock {
         return this.totalBlocks;
     }
 
+    /**
+     * Obtains the number of block groups in the file system.
+     * Block group 0 starts at the first data block, so the blocks before it don't belong to any group.
+     * @return The number of block groups.
+     */
+    public int getNumBlockGroups() {
+        long groupedBlocks = (this.getTotalBlocks() & 0xFFFFFFFFL) - this.getFirstDataBlock();
+        return (int) ((groupedBlocks + this.getBlocksPerGroup() - 1) / this.getBlocksPerGroup());
+    }
+
     /**
      * Obtains the block size for each block in the file system.
      * @return The block size.
@@ -168,4 +206,68 @@ public class SuperBlock extends DataBlock {
     public String getVolumeLbl() {
         return this.volumeLbl;
     }
-}
\ No newline at end of file
+
+    /**
+     * Obtains the block number of the first block in block group 0 - 1 for 1KB blocks, otherwise 0.
+     * @return The first data block.
+     */
+    public int getFirstDataBlock() {
+        return this.firstDataBlock;
+    }
+
+    /**
+     * Obtains the compatible feature flags.
+     * @return The compatible feature flags.
+     */
+    public int getFeatureCompat() {
+        return this.featureCompat;
+    }
+
+    /**
+     * Obtains the incompatible feature flags.
+     * @return The incompatible feature flags.
+     */
+    public int getFeatureIncompat() {
+        return this.featureIncompat;
+    }
+
+    /**
+     * Returns true if directories in this file system may have a hashed index.
+     * @return True if the dir_index feature is enabled.
+     */
+    public boolean hasDirIndex() {
+        return (this.featureCompat & FEATURE_DIR_INDEX) != 0;
+    }
+
+    /**
+     * Returns true if directory entries in this file system store the file type of each entry.
+     * @return True if the filetype feature is enabled.
+     */
+    public boolean hasFileType() {
+        return (this.featureIncompat & FEATURE_FILETYPE) != 0;
+    }
+
+    /**
+     * Obtains the seed for directory hashes.
+     * @return A copy of the four word hash seed.
+     */
+    public int[] getHashSeed() {
+        return this.hashSeed.clone();
+    }
+
+    /**
+     * Obtains the default directory hash version.
+     * @return The default hash version.
+     */
+    public int getDefHashVersion() {
+        return this.defHashVersion;
+    }
+
+    /**
+     * Obtains the file system flags.
+     * @return The file system flags.
+     */
+    public int getFlags() {
+        return this.flags;
+    }
+}
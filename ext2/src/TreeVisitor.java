@@ -0,0 +1,26 @@
+package ext2;
+
+/**
+ * Name: TreeVisitor
+ *
+ * This interface is implemented to receive each entry found by a walk of the directory tree.
+ * In a parallel walk visitors are called from many threads at once, so implementations must be thread safe.
+ * The "." and ".." entries of each directory are never visited.
+ *
+ * @author Harry Baines
+ * @see TreeWalker
+ */
+@FunctionalInterface
+public interface TreeVisitor {
+
+    /**
+     * Called for each entry in the tree.
+     *
+     * @param path The full path of the entry in the volume.
+     * @param entry The directory entry.
+     * @param isDirectory True if the entry is a directory.
+     * @param depth The depth of the entry below the root of the walk, starting at 1.
+     * @return True to walk into the entry if it is a directory, false to skip its contents.
+     */
+    boolean visit(String path, DirectoryEntry entry, boolean isDirectory, int depth);
+}
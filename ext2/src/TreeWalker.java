@@ -0,0 +1,286 @@
+package ext2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Name: TreeWalker
+ *
+ * This class walks the directory tree below a directory, passing every entry to a visitor.
+ * A parallel walk splits the subdirectories between the threads of a fork-join pool, so idle threads steal whole subtrees.
+ * The number of subdirectories queued or being walked at once is bounded by a semaphore - when no permit is free the
+ * subdirectory is walked by the current thread instead, so memory stays flat however large the tree is.
+ * Each directory is walked at most once, tracked by a bitmap of iNode numbers, so hard linked directories can't cause cycles.
+ * Directories are read one block at a time and only the iNodes of directories are read, unless the file system lacks
+ * the filetype feature, in which case each entry's iNode is read to find its type.
+ *
+ * @author Harry Baines
+ * @see TreeVisitor
+ */
+public class TreeWalker {
+
+    public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;        /* Depth limit for walking the whole tree */
+    public static final long UNLIMITED_ENTRIES = Long.MAX_VALUE;        /* Entry limit for walking the whole tree */
+    public static final int IN_FLIGHT_PER_THREAD = 4;                   /* Default number of subdirectories in flight per thread */
+
+    private final Volume vol;               /* The volume to walk */
+    private final ForkJoinPool pool;        /* The pool to walk on, or null for a single threaded walk */
+    private int maxDepth = UNLIMITED_DEPTH;                 /* The depth below which entries aren't visited */
+    private long maxEntries = UNLIMITED_ENTRIES;            /* The number of entries after which the walk stops */
+    private int maxInFlight;                                /* The number of subdirectories queued or being walked at once */
+
+    /**
+     * Constructor to initialise a single threaded walker, which visits entries depth first in the order they are stored.
+     * @param vol The volume to walk.
+     */
+    public TreeWalker(Volume vol) {
+        this(vol, null);
+    }
+
+    /**
+     * Constructor to initialise a walker which walks in parallel on the given fork-join pool.
+     * @param vol The volume to walk.
+     * @param pool The pool to walk on, or null for a single threaded walk.
+     */
+    public TreeWalker(Volume vol, ForkJoinPool pool) {
+        this.vol = vol;
+        this.pool = pool;
+        this.maxInFlight = (pool == null) ? 0 : pool.getParallelism() * IN_FLIGHT_PER_THREAD;
+    }
+
+    /**
+     * Walks the tree below the directory at the given path.
+     *
+     * @param rootPath The path of the directory to walk from.
+     * @param visitor The visitor to pass each entry to.
+     * @throws IllegalArgumentException if the path isn't a directory.
+     * @return The number of entries visited.
+     */
+    public long walk(String rootPath, TreeVisitor visitor) {
+        int rootINodeNumber = this.vol.resolve(rootPath);
+        if (rootINodeNumber == 0 || !this.vol.getINode(rootINodeNumber).isDirectory())
+            throw new IllegalArgumentException("Not a directory: " + rootPath);
+        return this.walk(rootINodeNumber, rootPath, visitor);
+    }
+
+    /**
+     * Walks the tree below the directory with the given iNode number.
+     *
+     * @param rootINodeNumber The iNode number of the directory to walk from.
+     * @param rootPath The path of the directory, used to build the paths of entries.
+     * @param visitor The visitor to pass each entry to.
+     * @return The number of entries visited.
+     */
+    public long walk(int rootINodeNumber, String rootPath, TreeVisitor visitor) {
+        Walk walk = new Walk(visitor);
+        walk.markVisited(rootINodeNumber);
+        if (this.pool == null)
+            walk.walkDirectory(rootINodeNumber, rootPath, 1);
+        else
+            this.pool.invoke(walk.new DirectoryTask(rootINodeNumber, rootPath, 1, false));
+        return Math.min(walk.entries.get(), this.maxEntries);
+    }
+
+    /**
+     * Sets the maximum depth of entries to visit. Entries directly in the root have a depth of 1.
+     * @param maxDepth The maximum depth.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the number of entries after which a walk stops.
+     * @param maxEntries The maximum number of entries to visit.
+     */
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Sets the number of subdirectories which can be queued or being walked at once in a parallel walk.
+     * @param maxInFlight The maximum number of subdirectories in flight.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Name: Walk
+     *
+     * The state of a single walk: the visitor, the directories already walked and the number of entries visited.
+     */
+    private class Walk {
+
+        private final TreeVisitor visitor;          /* The visitor to pass each entry to */
+        private final AtomicLongArray visited;      /* Bitmap of the iNode numbers of directories already walked */
+        private final AtomicLong entries;           /* The number of entries visited so far */
+        private final Semaphore inFlight;           /* Permits for subdirectories queued or being walked */
+        private volatile boolean stopped;           /* Set once the entry limit is reached */
+
+        /**
+         * Constructor to initialise the state of a walk.
+         * @param visitor The visitor to pass each entry to.
+         */
+        private Walk(TreeVisitor visitor) {
+            this.visitor = visitor;
+            this.visited = new AtomicLongArray(vol.getSuperblock().getTotaliNodes() / Long.SIZE + 1);
+            this.entries = new AtomicLong();
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        /**
+         * Marks a directory as walked.
+         * @param iNodeNumber The iNode number of the directory.
+         * @return True if the directory hadn't been walked before.
+         */
+        private boolean markVisited(int iNodeNumber) {
+            int word = iNodeNumber / Long.SIZE;
+            long bit = 1L << (iNodeNumber % Long.SIZE);
+            long current;
+            do {
+                current = this.visited.get(word);
+                if ((current & bit) != 0)
+                    return false;
+            } while (!this.visited.compareAndSet(word, current, current | bit));
+            return true;
+        }
+
+        /**
+         * Visits each entry in a directory, walking into its subdirectories.
+         * Subdirectories are forked as tasks while permits are free, otherwise they are walked by this thread.
+         * Subdirectories walked by this thread are kept on an explicit stack rather than by recursion, so the depth of
+         * the tree only costs heap for each open directory and can't overflow the thread's stack.
+         *
+         * @param dirINodeNumber The iNode number of the directory.
+         * @param path The path of the directory.
+         * @param depth The depth of the entries in the directory.
+         */
+        private void walkDirectory(int dirINodeNumber, String path, int depth) {
+
+            ArrayDeque<OpenDirectory> stack = new ArrayDeque<OpenDirectory>();
+            stack.push(new OpenDirectory(dirINodeNumber, path, depth));
+
+            while (!stack.isEmpty()) {
+
+                // Finish a directory once its entries run out or the walk stops, joining the subdirectories it forked
+                OpenDirectory dir = stack.peek();
+                if (this.stopped || !dir.entries.hasNext()) {
+                    stack.pop();
+                    dir.joinForked();
+                    continue;
+                }
+
+                DirectoryEntry entry = dir.entries.next();
+                if (entry.isDotOrDotDot())
+                    continue;
+                if (this.entries.incrementAndGet() > maxEntries) {
+                    this.stopped = true;
+                    continue;
+                }
+
+                // The type is only read from the iNode if the entry doesn't store it
+                boolean isDirectory = (entry.getFileType() == DirectoryEntry.TYPE_UNKNOWN)
+                    ? vol.getINode(entry.getINodeNumber()).isDirectory() : entry.isDirectory();
+
+                String entryPath = dir.prefix + entry.getName();
+                boolean descend = this.visitor.visit(entryPath, entry, isDirectory, dir.depth);
+
+                if (isDirectory && descend && dir.depth < maxDepth && this.markVisited(entry.getINodeNumber())) {
+                    if (pool != null && this.inFlight.tryAcquire()) {
+                        DirectoryTask task = new DirectoryTask(entry.getINodeNumber(), entryPath, dir.depth + 1, true);
+                        task.fork();
+                        if (dir.forked == null)
+                            dir.forked = new ArrayList<DirectoryTask>();
+                        dir.forked.add(task);
+                    }
+                    else
+                        stack.push(new OpenDirectory(entry.getINodeNumber(), entryPath, dir.depth + 1));
+                }
+            }
+        }
+
+        /**
+         * Name: OpenDirectory
+         *
+         * A directory being walked by the current thread: where its entries have been read up to, and the subdirectories
+         * it forked as tasks, which are joined when it is finished.
+         */
+        private class OpenDirectory {
+
+            private final Iterator<DirectoryEntry> entries;     /* The entries of the directory not yet visited */
+            private final String prefix;                        /* The path of the directory, ending with '/' */
+            private final int depth;                            /* The depth of the entries in the directory */
+            private List<DirectoryTask> forked;                 /* The subdirectories forked as tasks, or null if none */
+
+            /**
+             * Constructor to open a directory for walking.
+             *
+             * @param dirINodeNumber The iNode number of the directory.
+             * @param path The path of the directory.
+             * @param depth The depth of the entries in the directory.
+             */
+            private OpenDirectory(int dirINodeNumber, String path, int depth) {
+                this.entries = new Directory(vol, vol.getINode(dirINodeNumber)).iterator();
+                this.prefix = path.endsWith("/") ? path : path + "/";
+                this.depth = depth;
+            }
+
+            /**
+             * Waits for the subdirectories forked from this directory to be walked.
+             */
+            private void joinForked() {
+                if (this.forked != null)
+                    for (DirectoryTask task : this.forked)
+                        task.join();
+            }
+        }
+
+        /**
+         * Name: DirectoryTask
+         *
+         * Walks a single directory on the fork-join pool, releasing its permit when done.
+         */
+        private class DirectoryTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final int dirINodeNumber;       /* The iNode number of the directory */
+            private final String path;              /* The path of the directory */
+            private final int depth;                /* The depth of the entries in the directory */
+            private final boolean holdsPermit;      /* True if the task holds a permit to release */
+
+            /**
+             * Constructor to initialise a task for a directory.
+             *
+             * @param dirINodeNumber The iNode number of the directory.
+             * @param path The path of the directory.
+             * @param depth The depth of the entries in the directory.
+             * @param holdsPermit True if the task holds a permit to release.
+             */
+            private DirectoryTask(int dirINodeNumber, String path, int depth, boolean holdsPermit) {
+                this.dirINodeNumber = dirINodeNumber;
+                this.path = path;
+                this.depth = depth;
+                this.holdsPermit = holdsPermit;
+            }
+
+            @Override
+            protected void compute() {
+                try {
+                    walkDirectory(this.dirINodeNumber, this.path, this.depth);
+                } finally {
+                    if (this.holdsPermit)
+                        inFlight.release();
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package ext2;
 
-import java.io.RandomAccessFile;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.jfr.EventType;
 
 /**
  * Name: Volume
@@ -12,14 +19,35 @@ import java.nio.ByteOrder;
  * This class provides methods for initialising various fields that are contained in the file the user wishes to open,
  * such as the superblock, group descriptor fields etc.
  * If the volume is opened successfully a success message is printed, otherwise an error message is printed.
+ * All bytes are read through a block device, which by default memory maps the volume in segments.
+ * Block devices are stateless per read, so one volume can be read from by many threads at once.
+ * A block cache can be enabled to keep frequently read blocks in memory, which helps most for channel backed devices.
+ * Metrics can be enabled to count and time reads from the volume.
+ * Asynchronous opens and reads of files run on the volume's I/O executor, by default a bounded pool of daemon threads
+ * owned by the volume, so blocking reads never hold up other users of the common fork join pool.
  *
  * @author Harry Baines
+ * @see BlockDevice
  */
 public class Volume {
+
+    public static final int DEFAULT_INODE_CACHE_SIZE = 8192;    /* Default maximum number of parsed iNodes to cache */
+    public static final int DEFAULT_DENTRY_CACHE_SIZE = 65536;  /* Default maximum number of directory entries to cache */
+    public static final int DEFAULT_DIRECTORY_INDEX_THRESHOLD = 256;   /* Default number of entries above which a directory is indexed in memory */
+    public static final int ROOT_INODE_NUMBER = 2;              /* The iNode number of the root directory */
+    public static final int DEFAULT_IO_THREADS = Runtime.getRuntime().availableProcessors();  /* Number of threads in the default I/O pool */
+    public static final int IO_THREAD_KEEP_ALIVE_SECONDS = 30;  /* Time an idle thread of the default I/O pool is kept for */
+
+    private static final EventType BLOCK_READ_EVENT_TYPE = EventType.getEventType(BlockReadEvent.class);  /* Checked before allocating an event for a read */
     
-    private RandomAccessFile file;                /* The file that represents the volume the user wishes to open */
-    private byte[] fileInBytes;                   /* Array of bytes to store the entire volume */
-    private ByteBuffer byteBuffer;                /* Byte buffer to store all bytes in this volume */
+    private BlockDevice device;                   /* The device which stores the bytes of this volume */
+    private volatile BlockCache blockCache;       /* Cache of blocks read from the device, or null if caching is disabled */
+    private INodeCache iNodeCache;                /* Cache of parsed iNodes, keyed by iNode number */
+    private DentryCache dentryCache;              /* Cache of names in directories and the iNode numbers they refer to */
+    private volatile Metrics metrics;             /* Counters and latencies of reads from this volume, or null if metrics are disabled */
+    private int directoryIndexThreshold = DEFAULT_DIRECTORY_INDEX_THRESHOLD;   /* Number of entries above which a directory is indexed in memory */
+    private volatile Executor ioExecutor;         /* Executor asynchronous opens and reads run on, or null for the default pool */
+    private ThreadPoolExecutor defaultIOExecutor; /* The default I/O pool owned by this volume, created when first used */
     
     private SuperBlock superBlock;                /* Super block reference containing all info about the file system in this volume */
     private GroupDescriptor[] groupDescriptors;   /* Array of all group descriptors in this volume */
@@ -27,44 +55,500 @@ public class Volume {
 
     /** 
      * Constructor used to open a file given a file path to that file.
+     * The volume is memory mapped rather than read into memory.
      * @param filePath The file path to the volume.
      */
     public Volume(String filePath) { 
+        this(filePath, true);
+    }
 
-        try {
-            if (this.openVolume(filePath))
-                System.out.println("----------\nVolume opened successfully.\n----------");
-        } catch (IOException f) {
-            System.out.println("----------\nCouldn't find/open the file.\n----------");
-            System.exit(0);
-        }
+    /** 
+     * Constructor used to open a file given a file path to that file.
+     * @param filePath The file path to the volume.
+     * @param memoryMapped True to memory map the volume, false to read the entire volume into memory.
+     */
+    public Volume(String filePath, boolean memoryMapped) { 
+        this(Volume.openVolume(filePath, memoryMapped));
+    }
+
+    /** 
+     * Constructor used to read a volume from an already opened block device.
+     * @param device The block device storing the volume.
+     */
+    public Volume(BlockDevice device) { 
 
-        // Wrap existing volume byte array to byte buffer
-        byteBuffer = ByteBuffer.wrap(this.fileInBytes);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.device = device;
 
         // Create new super block instance
         this.superBlock = new SuperBlock(this);
         this.iNodeTablePointers = this.getAllINodeTblPointers();
+        this.iNodeCache = new INodeCache(DEFAULT_INODE_CACHE_SIZE);
+        this.dentryCache = new DentryCache(DEFAULT_DENTRY_CACHE_SIZE);
     }
 
     /**
-     * Opens a given volume given a filename into an array of bytes and returns true if successful.
+     * Opens a given volume given a filename as a block device.
+     * The volume is either memory mapped or read into an array of bytes.
+     * The program exits if the file couldn't be opened.
+     *
      * @param filePath The file path to the volume as a string.
-     * @throws IOException if file couldn't be opened.
-     * @return true if the file was successfully opened, false otherwise.
-     */
-    public boolean openVolume(String filePath) throws IOException {
-        this.file = new RandomAccessFile(filePath, "r");
-        this.fileInBytes = new byte[(int) this.file.length()];
-        this.file.readFully(this.fileInBytes);
-        return true;
+     * @param memoryMapped True to memory map the volume, false to read the entire volume into memory.
+     * @return The block device for the opened volume.
+     */
+    public static BlockDevice openVolume(String filePath, boolean memoryMapped) {
+
+        BlockDevice device = null;
+        try {
+            device = (memoryMapped) ? new MappedBlockDevice(filePath) : new MemoryBlockDevice(filePath);
+            System.out.println("----------\nVolume opened successfully.\n----------");
+        } catch (IOException f) {
+            System.out.println("----------\nCouldn't find/open the file.\n----------");
+            System.exit(0);
+        }
+        return device;
     } 
 
+    /**
+     * Copies length bytes starting at byte offset startByte in the volume into the given array.
+     * If the block cache is enabled, each block covering the range is served from the cache where possible
+     * and whole blocks read from the device are offered to the cache.
+     *
+     * @param startByte The byte offset in the volume to begin reading from.
+     * @param dst The array to copy the bytes into.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The total number of bytes to read.
+     */
+    public void readBytes(long startByte, byte[] dst, int dstOffset, int length) {
+
+        // Only allocate an event and time the read if metrics are enabled or a recording wants the event
+        Metrics metrics = this.metrics;
+        if (metrics == null && !BLOCK_READ_EVENT_TYPE.isEnabled()) {
+            this.copyBytes(startByte, dst, dstOffset, length);
+            return;
+        }
+
+        BlockReadEvent event = new BlockReadEvent();
+        long startTime = System.nanoTime();
+        event.begin();
+        int cachedBlocks = this.copyBytes(startByte, dst, dstOffset, length);
+        event.end();
+
+        // The super block itself is read before the block size is known
+        int blockSize = (this.superBlock != null) ? this.superBlock.getBlockSize() : SuperBlock.SUPERBLOCK_SIZE;
+        int numBlocks = (length > 0) ? (int) ((startByte + length - 1) / blockSize - startByte / blockSize + 1) : 0;
+        if (metrics != null)
+            metrics.recordBlockRead(numBlocks, length, System.nanoTime() - startTime);
+        if (event.shouldCommit()) {
+            event.block = startByte / blockSize;
+            event.blocks = numBlocks;
+            event.bytes = length;
+            event.cacheHit = numBlocks > 0 && cachedBlocks == numBlocks;
+            event.commit();
+        }
+    }
+
+    /**
+     * Copies bytes from the volume into an array, through the block cache if it is enabled.
+     *
+     * @param startByte The byte offset in the volume to begin reading from.
+     * @param dst The array to copy the bytes into.
+     * @param dstOffset The offset in the array to begin copying to.
+     * @param length The total number of bytes to read.
+     * @return The number of blocks served from the block cache.
+     */
+    private int copyBytes(long startByte, byte[] dst, int dstOffset, int length) {
+
+        // Read the field once, so the cache being disabled part way through a read can't be seen
+        BlockCache blockCache = this.blockCache;
+        if (blockCache == null) {
+            this.device.read(startByte, dst, dstOffset, length);
+            return 0;
+        }
+
+        int blockSize = this.superBlock.getBlockSize();
+        byte[] blockBytes = null;
+        int cachedBlocks = 0;
+
+        // Read the range block by block
+        while (length > 0) {
+            long blockNum = startByte / blockSize;
+            int offsetInBlock = (int) (startByte % blockSize);
+            int toCopy = Math.min(length, blockSize - offsetInBlock);
+
+            // A partial block at the end of the device is never cached
+            if ((blockNum + 1) * blockSize > this.device.size())
+                this.device.read(startByte, dst, dstOffset, toCopy);
+
+            else if (blockCache.read(blockNum, offsetInBlock, dst, dstOffset, toCopy))
+                cachedBlocks++;
+
+            else {
+
+                // Whole blocks can be read straight into the array, otherwise read the block into a temporary array
+                if (toCopy == blockSize) {
+                    this.device.read(startByte, dst, dstOffset, blockSize);
+                    blockCache.put(blockNum, dst, dstOffset);
+                }
+                else {
+                    if (blockBytes == null)
+                        blockBytes = new byte[blockSize];
+                    this.device.read(blockNum * blockSize, blockBytes, 0, blockSize);
+                    blockCache.put(blockNum, blockBytes, 0);
+                    System.arraycopy(blockBytes, offsetInBlock, dst, dstOffset, toCopy);
+                }
+            }
+
+            startByte += toCopy;
+            dstOffset += toCopy;
+            length -= toCopy;
+        }
+        return cachedBlocks;
+    }
+
+    /**
+     * Reads the little-endian 32-bit integer at byte offset startByte in the volume.
+     * The integer is read straight from the block device, or from the cached block if the block cache is enabled,
+     * so no array is needed. A block cache miss offers the whole block to the cache.
+     *
+     * @param startByte The byte offset in the volume of the integer.
+     * @return The integer.
+     */
+    public int readInt(long startByte) {
+        BlockCache blockCache = this.blockCache;
+        if (blockCache == null || !this.isCacheable(startByte, Integer.BYTES))
+            return this.device.readInt(startByte);
+
+        int blockSize = this.superBlock.getBlockSize();
+        long value = blockCache.readInt(startByte / blockSize, (int) (startByte % blockSize));
+        if (value != BlockCache.MISS)
+            return (int) value;
+        this.cacheBlock(blockCache, startByte / blockSize);
+        return this.device.readInt(startByte);
+    }
+
+    /**
+     * Reads the little-endian 16-bit integer at byte offset startByte in the volume.
+     * The integer is read straight from the block device, or from the cached block if the block cache is enabled,
+     * so no array is needed. A block cache miss offers the whole block to the cache.
+     *
+     * @param startByte The byte offset in the volume of the integer.
+     * @return The integer.
+     */
+    public short readShort(long startByte) {
+        BlockCache blockCache = this.blockCache;
+        if (blockCache == null || !this.isCacheable(startByte, Short.BYTES))
+            return this.device.readShort(startByte);
+
+        int blockSize = this.superBlock.getBlockSize();
+        long value = blockCache.readShort(startByte / blockSize, (int) (startByte % blockSize));
+        if (value != BlockCache.MISS)
+            return (short) value;
+        this.cacheBlock(blockCache, startByte / blockSize);
+        return this.device.readShort(startByte);
+    }
+
+    /**
+     * Returns true if the given bytes lie within one whole block, which the block cache can hold.
+     * A partial block at the end of the device is never cached.
+     *
+     * @param startByte The byte offset in the volume of the first byte.
+     * @param length The number of bytes.
+     * @return True if the bytes can be read from a cached block.
+     */
+    private boolean isCacheable(long startByte, int length) {
+        int blockSize = this.superBlock.getBlockSize();
+        return startByte % blockSize + length <= blockSize && (startByte / blockSize + 1) * blockSize <= this.device.size();
+    }
+
+    /**
+     * Reads a whole block from the device and offers it to the block cache.
+     * @param blockCache The block cache.
+     * @param blockNum The physical block number.
+     */
+    private void cacheBlock(BlockCache blockCache, long blockNum) {
+        int blockSize = this.superBlock.getBlockSize();
+        byte[] blockBytes = new byte[blockSize];
+        this.device.read(blockNum * blockSize, blockBytes, 0, blockSize);
+        blockCache.put(blockNum, blockBytes, 0);
+    }
+
+    /**
+     * Writes count bytes starting at byte offset startByte in the volume to the given channel.
+     * The bytes are passed straight from the block device to the channel, bypassing the block cache.
+     *
+     * @param startByte The byte offset in the volume to begin reading from.
+     * @param count The total number of bytes to write.
+     * @param target The channel to write the bytes to.
+     * @throws IOException if the bytes couldn't be written.
+     */
+    public void transferTo(long startByte, long count, WritableByteChannel target) throws IOException {
+        this.device.transferTo(startByte, count, target);
+    }
+
+    /**
+     * Enables a cache of blocks read from this volume, replacing any existing cache.
+     * @param maxBytes The maximum number of bytes of block data to cache off-heap.
+     */
+    public void enableBlockCache(long maxBytes) {
+        this.blockCache = new BlockCache(maxBytes, this.superBlock.getBlockSize());
+    }
+
+    /**
+     * Disables the block cache, releasing all cached blocks.
+     */
+    public void disableBlockCache() {
+        this.blockCache = null;
+    }
+
+    /**
+     * Returns the cache of blocks read from this volume.
+     * @return The block cache, or null if caching is disabled.
+     */
+    public BlockCache getBlockCache() {
+        return this.blockCache;
+    }
+
+    /**
+     * Enables metrics for reads from this volume, keeping any metrics already recorded.
+     * @return The metrics.
+     */
+    public synchronized Metrics enableMetrics() {
+        if (this.metrics == null)
+            this.metrics = new Metrics();
+        return this.metrics;
+    }
+
+    /**
+     * Disables metrics, discarding any metrics recorded.
+     */
+    public synchronized void disableMetrics() {
+        this.metrics = null;
+    }
+
+    /**
+     * Returns the metrics for reads from this volume.
+     * @return The metrics, or null if metrics are disabled.
+     */
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Sets the executor asynchronous opens and reads of files in this volume run on, e.g. a fixed pool of threads
+     * sized for the device. Reads already started finish on the executor they were started on.
+     * The executor is not shut down when the volume is closed.
+     * @param executor The executor.
+     */
+    public void setIOExecutor(Executor executor) {
+        if (executor == null)
+            throw new NullPointerException("executor");
+        this.ioExecutor = executor;
+    }
+
+    /**
+     * Returns the executor asynchronous opens and reads of files in this volume run on.
+     * @return The executor set with setIOExecutor(), or the volume's default I/O pool if none has been set.
+     */
+    public Executor getIOExecutor() {
+        Executor executor = this.ioExecutor;
+        return (executor != null) ? executor : this.getDefaultIOExecutor();
+    }
+
+    /**
+     * Returns the default I/O pool, creating it the first time it is needed.
+     * The pool has at most DEFAULT_IO_THREADS daemon threads, which are only started when reads are queued
+     * and stop again once idle, so a volume which never reads asynchronously holds no threads.
+     * @return The default I/O pool.
+     */
+    private synchronized Executor getDefaultIOExecutor() {
+
+        if (this.defaultIOExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.defaultIOExecutor = new ThreadPoolExecutor(DEFAULT_IO_THREADS, DEFAULT_IO_THREADS,
+                IO_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ext2-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            this.defaultIOExecutor.allowCoreThreadTimeOut(true);
+        }
+        return this.defaultIOExecutor;
+    }
+
+    /**
+     * Shuts down the default I/O pool, if it was created, and closes the block device storing this volume.
+     * Reads already queued on the pool still run, and fail if they reach the device after it is closed.
+     * @throws IOException if the device couldn't be closed.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.defaultIOExecutor != null)
+                this.defaultIOExecutor.shutdown();
+        }
+        this.device.close();
+    }
+
+    /**
+     * Obtains the iNode with the given number, from the iNode cache if possible.
+     * iNodes not in the cache are read, parsed and added to the cache.
+     *
+     * @param iNodeNumber The iNode number.
+     * @return The iNode.
+     */
+    public INode getINode(int iNodeNumber) {
+
+        INode iNode = this.iNodeCache.get(iNodeNumber);
+        if (iNode == null) {
+            Metrics metrics = this.metrics;
+            long startTime = (metrics != null) ? System.nanoTime() : 0;
+            INodeLoadEvent event = new INodeLoadEvent();
+            event.begin();
+            int tableIndex = this.getTablePointerForiNode(iNodeNumber, this.superBlock.getiNodesPerGroup(), this.superBlock.getTotaliNodes());
+            iNode = new INode(iNodeNumber, this.iNodeTablePointers[tableIndex], tableIndex, this.superBlock);
+            event.end();
+            if (metrics != null)
+                metrics.recordINodeDecode(System.nanoTime() - startTime);
+            if (event.shouldCommit()) {
+                event.iNodeNumber = iNodeNumber;
+                event.group = tableIndex;
+                event.commit();
+            }
+            this.iNodeCache.put(iNode);
+        }
+        return iNode;
+    }
+
+    /**
+     * Finds the iNode number for a name in a directory, from the dentry cache if possible.
+     * On a cache miss the directory is searched and the result cached, including names that don't exist.
+     *
+     * @param dirINodeNumber The iNode number of the directory to search.
+     * @param name The name of the entry in the directory.
+     * @return The iNode number the name refers to, or 0 if the name doesn't exist.
+     */
+    public int lookup(int dirINodeNumber, String name) {
+
+        int iNodeNumber = this.dentryCache.get(dirINodeNumber, name);
+        if (iNodeNumber == DentryCache.NOT_CACHED) {
+            iNodeNumber = new Directory(this, this.getINode(dirINodeNumber)).lookup(name);
+            this.dentryCache.put(dirINodeNumber, name, iNodeNumber);
+        }
+        return iNodeNumber;
+    }
+
+    /**
+     * Resolves a path from the root directory to an iNode number, through the dentry cache.
+     *
+     * @param path The path, with names separated by "/".
+     * @return The iNode number the path refers to, or 0 if the path doesn't exist.
+     */
+    public int resolve(String path) {
+        return this.resolve(path, null);
+    }
+
+    /**
+     * Resolves a path from the root directory to an iNode number, through the dentry cache, and records the last
+     * directory reached. Each name is looked up in turn, and only directories can contain further names, so a regular
+     * file before the end of the path means the path doesn't exist. This is shared by resolve() and Ext2File.
+     *
+     * @param path The path, with names separated by "/".
+     * @param lastDirectory An array to store the iNode number of the last directory reached in, or null.
+     *                      This is the path itself if it is a directory, otherwise its parent if it exists.
+     * @return The iNode number the path refers to, or 0 if the path doesn't exist.
+     */
+    int resolve(String path, int[] lastDirectory) {
+
+        PathLookupEvent event = new PathLookupEvent();
+        event.begin();
+
+        int iNodeNumber = ROOT_INODE_NUMBER;
+        int dirINodeNumber = ROOT_INODE_NUMBER;
+        int components = 0;
+        for (String name : path.split("/")) {
+            if (name.isEmpty())
+                continue;
+
+            // Only directories can contain further names
+            if (!this.getINode(iNodeNumber).isDirectory()) {
+                iNodeNumber = 0;
+                break;
+            }
+            dirINodeNumber = iNodeNumber;
+            components++;
+            iNodeNumber = this.lookup(iNodeNumber, name);
+            if (iNodeNumber == 0)
+                break;
+        }
+
+        if (lastDirectory != null)
+            lastDirectory[0] = (iNodeNumber != 0 && this.getINode(iNodeNumber).isDirectory()) ? iNodeNumber : dirINodeNumber;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.components = components;
+            event.iNodeNumber = iNodeNumber;
+            event.commit();
+        }
+        return iNodeNumber;
+    }
+
+    /**
+     * Sets the number of entries above which a directory without a hashed index on disk is indexed in memory.
+     * The threshold applies to directories first searched after it is set.
+     * @param threshold The number of entries.
+     */
+    public void setDirectoryIndexThreshold(int threshold) {
+        this.directoryIndexThreshold = threshold;
+    }
+
+    /**
+     * Obtains the number of entries above which a directory without a hashed index on disk is indexed in memory.
+     * @return The number of entries.
+     */
+    public int getDirectoryIndexThreshold() {
+        return this.directoryIndexThreshold;
+    }
+
+    /**
+     * Replaces the dentry cache with an empty cache of the given size.
+     * A size of 0 disables the cache, so every lookup searches the directory.
+     * @param maxEntries The maximum number of directory entries to cache.
+     */
+    public void setDentryCacheSize(int maxEntries) {
+        this.dentryCache = new DentryCache(maxEntries);
+    }
+
+    /**
+     * Returns the cache of directory entries for this volume.
+     * @return The dentry cache.
+     */
+    public DentryCache getDentryCache() {
+        return this.dentryCache;
+    }
+
+    /**
+     * Replaces the iNode cache with an empty cache of the given size.
+     * A size of 0 disables the cache, so every iNode is read and parsed each time it is needed.
+     * @param maxINodes The maximum number of parsed iNodes to cache.
+     */
+    public void setINodeCacheSize(int maxINodes) {
+        this.iNodeCache = new INodeCache(maxINodes);
+    }
+
+    /**
+     * Returns the cache of parsed iNodes for this volume.
+     * @return The iNode cache.
+     */
+    public INodeCache getINodeCache() {
+        return this.iNodeCache;
+    }
+
     /**
      * Method to obtain the group number the iNode belongs to and the index in the array of iNode table pointers.
      * The correct iNode table pointer can then be used to find the iNode required.
      * E.g. A table index of 2 indicates the iNode exists in block group 2 and index 2 of the iNode table pointers is the table pointer to use.
+     * iNodes are numbered from 1 and each group holds the same number, so the group is found by division.
      *
      * @param iNodeNumber The iNode number.
      * @param iNodesPerGroup The total number of iNodes per group.
@@ -72,13 +556,19 @@ public class Volume {
      * @return The table index (group number and index in array of iNode table pointers).
      */
     public int getTablePointerForiNode(int iNodeNumber, int iNodesPerGroup, int totaliNodes) {
-        int tableIndex = 0;
-        for (int i = iNodesPerGroup; i <= totaliNodes; i += iNodesPerGroup) {
-            if (iNodeNumber <= i)
-                break;
-            tableIndex++;
-        }
-        return tableIndex;
+        return (iNodeNumber - 1) / iNodesPerGroup;
+    }
+
+    /**
+     * Obtains the offset, in bytes, of an iNode in this volume, without reading or parsing it.
+     * @param iNodeNumber The iNode number.
+     * @return The byte offset of the iNode in the volume.
+     */
+    public long getINodeOffset(int iNodeNumber) {
+        int iNodesPerGroup = this.superBlock.getiNodesPerGroup();
+        int group = (iNodeNumber - 1) / iNodesPerGroup;
+        int indexInGroup = (iNodeNumber - 1) % iNodesPerGroup;
+        return (this.iNodeTablePointers[group] & 0xFFFFFFFFL) * this.superBlock.getBlockSize() + (long) indexInGroup * this.superBlock.getiNodeSize();
     }
 
     /**
@@ -90,13 +580,14 @@ public class Volume {
     private int[] getAllINodeTblPointers() {
 
         // Obtains array of iNode table pointers from all group descriptors
-        int numBlockGroups = (int) Math.ceil((double) this.superBlock.getTotalBlocks() / (double) this.superBlock.getBlocksPerGroup());
+        int numBlockGroups = this.superBlock.getNumBlockGroups();
 
         // Array of iNode table pointers
         int[] iNodeTablePointers = new int[numBlockGroups];
 
-        // Finds the group descriptors using block group 0 (1024 bytes after superblock)
-        byte[] groupDescBytes = this.superBlock.readBlock(2 * this.superBlock.getBlockSize(), numBlockGroups * GroupDescriptor.GROUP_DESCRIPTOR_SIZE);
+        // Finds the group descriptors in the block after the super block - block 2 for 1KB blocks, otherwise block 1
+        long groupDescStart = (this.superBlock.getFirstDataBlock() + 1L) * this.superBlock.getBlockSize();
+        byte[] groupDescBytes = this.superBlock.readBlock(groupDescStart, (long) numBlockGroups * GroupDescriptor.GROUP_DESCRIPTOR_SIZE);
         ByteBuffer groupDescBuffer = ByteBuffer.wrap(groupDescBytes);
         groupDescBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -137,10 +628,18 @@ public class Volume {
     }  
 
     /**
-     * Returns the byte buffer which stores this entire volume, in bytes.
-     * @return The byte buffer of bytes in this volume.
+     * Returns the block device which stores this volume.
+     * @return The block device.
      */
-    public ByteBuffer getByteBuffer() {
-        return this.byteBuffer;
-    }   
+    public BlockDevice getBlockDevice() {
+        return this.device;
+    }
+
+    /**
+     * Returns the total size of this volume, in bytes.
+     * @return The volume size.
+     */
+    public long getVolumeSize() {
+        return this.device.size();
+    }
 }
\ No newline at end of file